@@ -0,0 +1,190 @@
+package calcpa;
+
+import calcpa.model.Course;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Snapshot nhị phân dạng cột của dữ liệu môn học, ghi cạnh data.csv để lần khởi động sau
+ * không phải parse lại text.
+ *
+ * Cấu trúc file: header (magic, version, dấu của file nguồn: tên, kích thước, thời điểm sửa,
+ * fileKey), số dòng, 5 từ điển chuỗi (semester, code, name, grade, student), rồi các cột:
+ * id semester/code/name/student (int), credits (byte), id grade (byte).
+ * Snapshot bị coi là cũ nếu dấu của file nguồn hiện tại khác dấu đã ghi.
+ */
+public class CourseSnapshot {
+    private static final int MAGIC = 0x43504153; // "CPAS"
+    private static final int VERSION = 3;
+    // Báo tiến độ mỗi 65536 dòng
+    private static final int PROGRESS_STEP_MASK = 0xFFFF;
+
+    /**
+     * Đọc snapshot vào một buffer trên heap. Trả về null nếu chưa có, sai định dạng hoặc đã cũ
+     * so với file nguồn; khi đó caller đọc lại từ CSV/xlsx.
+     * Không map file: vùng map chỉ được gỡ khi GC thu buffer, trong lúc đó Windows không cho
+     * write() thay snapshot bằng rename.
+     */
+    public static List<Course> load(DoubleConsumer progress) {
+        Path path = DataFiles.snapshot();
+        DataFiles.Signature current = DataFiles.Signature.read(ExcelReader.resolveSource());
+        if (current == null || !Files.exists(path)) return null;
+
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+            DataFiles.Signature recorded = new DataFiles.Signature(
+                    readString(buf), buf.getLong(), buf.getLong(), readString(buf));
+            if (!recorded.equals(current)) return null;
+
+            int rows = buf.getInt();
+            String[] semesters = readDictionary(buf);
+            String[] codes = readDictionary(buf);
+            String[] names = readDictionary(buf);
+            String[] grades = readDictionary(buf);
+            String[] students = readDictionary(buf);
+
+            int semesterCol = buf.position();
+            int codeCol = semesterCol + rows * 4;
+            int nameCol = codeCol + rows * 4;
+            int studentCol = nameCol + rows * 4;
+            int creditCol = studentCol + rows * 4;
+            int gradeCol = creditCol + rows;
+
+            List<Course> courses = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                if ((i & PROGRESS_STEP_MASK) == 0) progress.accept((double) i / rows);
+                courses.add(new Course(
+                        codes[buf.getInt(codeCol + i * 4)],
+                        names[buf.getInt(nameCol + i * 4)],
+                        buf.get(creditCol + i) & 0xFF,
+                        grades[buf.get(gradeCol + i) & 0xFF],
+                        semesters[buf.getInt(semesterCol + i * 4)],
+                        students[buf.getInt(studentCol + i * 4)]));
+            }
+            return courses;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Ghi snapshot cho danh sách môn, gắn với dấu source của file nguồn. source phải được lấy
+     * trước khi đọc file: nếu file bị sửa trong lúc parse thì dấu đã ghi khác file mới và
+     * snapshot bị coi là cũ, thay vì mang dấu mới với dữ liệu cũ.
+     * Bỏ qua nếu source null hoặc dữ liệu không vừa định dạng (tín chỉ ngoài 0..255
+     * hoặc quá 256 loại điểm).
+     */
+    public static void write(List<Course> courses, DataFiles.Signature source) {
+        if (source == null) return;
+
+        Map<String, Integer> semesterIds = new HashMap<>();
+        Map<String, Integer> codeIds = new HashMap<>();
+        Map<String, Integer> nameIds = new HashMap<>();
+        Map<String, Integer> gradeIds = new HashMap<>();
+        Map<String, Integer> studentIds = new HashMap<>();
+        List<String> semesters = new ArrayList<>();
+        List<String> codes = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> grades = new ArrayList<>();
+        List<String> students = new ArrayList<>();
+
+        int rows = courses.size();
+        int[] semesterCol = new int[rows];
+        int[] codeCol = new int[rows];
+        int[] nameCol = new int[rows];
+        int[] studentCol = new int[rows];
+        byte[] creditCol = new byte[rows];
+        byte[] gradeCol = new byte[rows];
+
+        for (int i = 0; i < rows; i++) {
+            Course c = courses.get(i);
+            if (c.getCredits() < 0 || c.getCredits() > 255) return;
+            semesterCol[i] = encode(c.getSemester(), semesterIds, semesters);
+            codeCol[i] = encode(c.getCode(), codeIds, codes);
+            nameCol[i] = encode(c.getName(), nameIds, names);
+            studentCol[i] = encode(c.getStudentId(), studentIds, students);
+            creditCol[i] = (byte) c.getCredits();
+            int grade = encode(c.getGrade(), gradeIds, grades);
+            if (grade > 255) return;
+            gradeCol[i] = (byte) grade;
+        }
+
+        Path path = DataFiles.snapshot();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, source.name());
+                out.writeLong(source.size());
+                out.writeLong(source.modified());
+                writeString(out, source.key());
+
+                out.writeInt(rows);
+                writeDictionary(out, semesters);
+                writeDictionary(out, codes);
+                writeDictionary(out, names);
+                writeDictionary(out, grades);
+                writeDictionary(out, students);
+
+                for (int id : semesterCol) out.writeInt(id);
+                for (int id : codeCol) out.writeInt(id);
+                for (int id : nameCol) out.writeInt(id);
+                for (int id : studentCol) out.writeInt(id);
+                out.write(creditCol);
+                out.write(gradeCol);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static int encode(String value, Map<String, Integer> ids, List<String> dictionary) {
+        String key = value == null ? "" : value;
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = dictionary.size();
+            ids.put(key, id);
+            dictionary.add(key);
+        }
+        return id;
+    }
+
+    private static void writeDictionary(DataOutputStream out, List<String> dictionary) throws Exception {
+        out.writeInt(dictionary.size());
+        for (String s : dictionary) writeString(out, s);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws Exception {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String[] readDictionary(ByteBuffer buf) {
+        String[] dictionary = new String[buf.getInt()];
+        for (int i = 0; i < dictionary.length; i++) dictionary[i] = readString(buf);
+        return dictionary;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,93 @@
+package calcpa;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Vị trí các file dữ liệu của app: data.csv / data.xlsx, snapshot và journal.
+ * Mặc định nằm trong src/main/resources; test đổi sang thư mục tạm bằng setDirectory.
+ */
+public class DataFiles {
+    private static volatile Path directory = Paths.get("src/main/resources");
+
+    public static Path directory() {
+        return directory;
+    }
+
+    public static void setDirectory(Path dir) {
+        directory = dir;
+    }
+
+    public static Path csv() {
+        return directory.resolve("data.csv");
+    }
+
+    public static Path xlsx() {
+        return directory.resolve("data.xlsx");
+    }
+
+    public static Path snapshot() {
+        return directory.resolve("data.snapshot");
+    }
+
+    public static Path journal() {
+        return directory.resolve("data.journal");
+    }
+
+    // Journal đang được compact
+    public static Path rotatedJournal() {
+        return directory.resolve("data.journal.old");
+    }
+
+    // Journal bị bỏ vì file gốc đã được sửa từ bên ngoài sau khi ghi
+    public static Path staleJournal() {
+        return directory.resolve("data.journal.stale");
+    }
+
+    /**
+     * Dấu nhận dạng một phiên bản của file: tên, kích thước, thời điểm sửa và fileKey
+     * (inode, đổi sau mỗi lần thay file bằng rename; rỗng nếu hệ điều hành không hỗ trợ).
+     */
+    public record Signature(String name, long size, long modified, String key) {
+        /**
+         * Dấu của file hiện tại, null nếu không đọc được thuộc tính (chưa có file).
+         */
+        public static Signature read(Path file) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                Object key = attrs.fileKey();
+                return new Signature(file.getFileName().toString(), attrs.size(),
+                        attrs.lastModifiedTime().toMillis(), key == null ? "" : key.toString());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Dấu của cùng file sau khi được đổi tên thành name.
+         */
+        public Signature withName(String name) {
+            return new Signature(name, size, modified, key);
+        }
+
+        /**
+         * Dạng một dòng (không chứa '|' hay xuống dòng), đọc lại bằng parse.
+         */
+        public String format() {
+            return name + ":" + size + ":" + modified + ":" + key;
+        }
+
+        public static Signature parse(String s) {
+            String[] parts = s.split(":", 4);
+            if (parts.length != 4) return null;
+            try {
+                return new Signature(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -1,40 +1,584 @@
 package calcpa;
 
 import calcpa.model.Course;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
-import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
 
 public class ExcelReader {
-    public static List<Course> readCourses() {
-        List<Course> courses = new ArrayList<>();
+    // File nhỏ hơn ngưỡng này đọc thành một chunk trên luồng gọi, chia chunk không đáng công
+    private static final long PARALLEL_THRESHOLD = 4L * 1024 * 1024;
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+    // Mỗi chunk được đọc vào một byte[], giới hạn để file lớn không cần mảng khổng lồ
+    private static final long MAX_CHUNK_SIZE = 64L * 1024 * 1024;
+    private static final int FIELD_COUNT = 5;
+    // Cột thứ 6 (student) là tùy chọn, chỉ có ở file xuất cho cả khóa và chỉ được đọc
+    // khi header đặt tên cột đó là STUDENT_COLUMN
+    private static final int MAX_FIELDS = 6;
+    private static final String STUDENT_COLUMN = "student";
+    // Tín chỉ quá 9 chữ số coi như không hợp lệ (tránh tràn int)
+    private static final int MAX_CREDIT_DIGITS = 9;
+
+    private static volatile LoadStats lastStats = new LoadStats(0, 0, 0, 0, 0, 0, 0);
+    private static volatile ParseReport lastReport = ParseReport.EMPTY;
+
+    /**
+     * Thống kê lần đọc gần nhất (số dòng, số byte, thời gian, số chunk) kèm báo cáo
+     * bộ nhớ của từ điển giá trị: số giá trị khác nhau, số bản sao được dùng chung
+     * và ước lượng số byte heap không còn bị giữ lại.
+     */
+    public record LoadStats(long rows, long bytes, long elapsedNanos, int chunks,
+                            int distinctValues, long sharedValues, long bytesSaved) {
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : rows * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Đọc %d dòng (%d bytes, %d chunk) trong %.1f ms - %.0f dòng/s; "
+                            + "từ điển: %d giá trị, dùng chung %d bản sao, tiết kiệm ~%.1f MB",
+                    rows, bytes, chunks, elapsedNanos / 1_000_000.0, rowsPerSecond(),
+                    distinctValues, sharedValues, bytesSaved / 1_000_000.0);
+        }
+    }
+
+    public static LoadStats getLastStats() {
+        return lastStats;
+    }
+
+    /**
+     * Các dòng lỗi của lần parse file gần nhất. Không đổi khi dữ liệu được đọc từ snapshot.
+     */
+    public static ParseReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * File dữ liệu sẽ được đọc: data.xlsx nếu nó mới hơn data.csv (hoặc chưa có csv),
+     * ngược lại là data.csv. Sau lần lưu đầu tiên data.csv sẽ mới hơn và được ưu tiên.
+     */
+    public static Path resolveSource() {
         try {
-            InputStream is;
-            Path devPath = Paths.get("src/main/resources/data.csv");
-            if (Files.exists(devPath)) is = Files.newInputStream(devPath);
-            else throw new RuntimeException("Không tìm thấy src/main/resources/data.csv");
-            BufferedReader br = new BufferedReader( new InputStreamReader(is, StandardCharsets.UTF_8) );
-            String line;
-            br.readLine();
-            while ((line = br.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] parts = line.split(",");
-                if (parts.length < 5) continue;
-                String semester = parts[0].trim();
-                String code     = parts[1].trim();
-                String name     = parts[2].trim();
-                int credits     = Integer.parseInt(parts[3].trim());
-                String grade    = parts[4].trim();
-                courses.add(new Course( code, name, credits, grade, semester ));
+            Path csv = DataFiles.csv();
+            Path xlsx = DataFiles.xlsx();
+            if (Files.exists(xlsx) && (!Files.exists(csv)
+                    || Files.getLastModifiedTime(xlsx).compareTo(Files.getLastModifiedTime(csv)) > 0)) {
+                return xlsx;
             }
         } catch (Exception e) { e.printStackTrace(); }
+        return DataFiles.csv();
+    }
+
+    public static List<Course> readCourses() throws IOException {
+        return readCourses(progress -> { });
+    }
+
+    /**
+     * Đọc file dữ liệu đang dùng (xem resolveSource), progress nhận tỉ lệ số byte đã parse (0..1).
+     */
+    public static List<Course> readCourses(DoubleConsumer progress) throws IOException {
+        return readCourses(resolveSource(), progress);
+    }
+
+    /**
+     * Đọc dữ liệu môn học từ source (xlsx nếu tên file có đuôi .xlsx, ngược lại là CSV),
+     * progress nhận tỉ lệ số byte đã parse (0..1).
+     * Cột: semester, code, name, credits, grade và tùy chọn student (mã sinh viên), cột student
+     * chỉ được đọc khi header có tên cột đó ở vị trí thứ 6; không có thì cột thừa bị bỏ qua.
+     * Với xlsx không báo tiến độ giữa chừng.
+     * Dòng lỗi (thiếu cột, tín chỉ không phải số) bị bỏ qua và ghi vào getLastReport(),
+     * các dòng sau vẫn được đọc bình thường. Không đọc được cả file (không có file, lỗi I/O,
+     * xlsx hỏng) thì ném IOException chứ không trả về danh sách dở dang, để caller không
+     * ghi đè dữ liệu thật bằng nó; getLastStats() và getLastReport() khi đó giữ nguyên.
+     */
+    public static List<Course> readCourses(Path source, DoubleConsumer progress) throws IOException {
+        List<Course> courses = new ArrayList<>();
+        ValueDictionary dictionary = new ValueDictionary();
+        ParseErrors errors = new ParseErrors();
+        if (!Files.exists(source)) throw new FileNotFoundException("Không tìm thấy file dữ liệu " + source);
+        long size = Files.size(source);
+        long start = System.nanoTime();
+        int chunks;
+        if (source.getFileName().toString().toLowerCase().endsWith(".xlsx")) {
+            try {
+                readXlsx(source, courses, dictionary, errors);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Không đọc được " + source + ": " + e.getMessage(), e);
+            }
+            chunks = 1;
+        } else {
+            chunks = readCsv(source, courses, dictionary, errors, size, progress);
+        }
+        lastStats = new LoadStats(courses.size(), size, System.nanoTime() - start, chunks,
+                dictionary.distinctValues(), dictionary.sharedValues(), dictionary.estimatedBytesSaved());
+        lastReport = errors.toReport();
         return courses;
     }
+
+    /**
+     * Chia file thành các khoảng byte kết thúc đúng ở ký tự xuống dòng, parse song song
+     * trên ForkJoinPool rồi ghép kết quả theo đúng thứ tự trong file. File nhỏ chỉ có
+     * một khoảng và được parse luôn trên luồng gọi.
+     */
+    private static int readCsv(Path source, List<Course> courses, ValueDictionary dictionary, ParseErrors errors,
+                               long size, DoubleConsumer progress) throws IOException {
+        try (FileChannel ch = FileChannel.open(source, StandardOpenOption.READ)) {
+            // Dòng header chỉ dùng để biết file có cột student hay không
+            long start = nextLineStart(ch, 0, size);
+            int maxFields = namesStudent(readHeader(ch, start)) ? MAX_FIELDS : FIELD_COUNT;
+
+            long chunkSize = size - start;
+            if (size >= PARALLEL_THRESHOLD) {
+                int parallelism = ForkJoinPool.commonPool().getParallelism();
+                chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, chunkSize / (parallelism * 4L) + 1));
+            }
+            List<long[]> ranges = new ArrayList<>();
+            long pos = start;
+            while (pos < size) {
+                long end = Math.min(size, pos + chunkSize);
+                if (end < size) end = nextLineStart(ch, end, size);
+                ranges.add(new long[]{pos, end});
+                pos = end;
+            }
+            if (ranges.isEmpty()) return 0;
+
+            ChunkTask task = new ChunkTask(ch, dictionary, maxFields, ranges, 0, ranges.size(),
+                    new ChunkProgress(size, progress));
+            ChunkResult result;
+            try {
+                result = ranges.size() == 1 ? task.invoke() : ForkJoinPool.commonPool().invoke(task);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            courses.addAll(result.courses());
+            // Dòng 1 là header, dòng đầu của khoảng đầu tiên là dòng 2
+            errors.addAll(result.errors(), 2);
+            return ranges.size();
+        }
+    }
+
+    // Tên các cột trong dòng header [0, end)
+    private static String[] readHeader(FileChannel ch, long end) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) end);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, buf.position()) < 0) break;
+        }
+        return new String(buf.array(), 0, buf.position(), StandardCharsets.UTF_8).split(",", -1);
+    }
+
+    // true nếu cột thứ 6 trong header là cột student
+    private static boolean namesStudent(String[] header) {
+        return header.length > FIELD_COUNT && header[FIELD_COUNT] != null
+                && header[FIELD_COUNT].trim().equalsIgnoreCase(STUDENT_COLUMN);
+    }
+
+    // Vị trí bắt đầu của dòng kế tiếp tính từ pos (hoặc size nếu hết file)
+    private static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        while (pos < size) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') return Math.min(size, pos + i + 1);
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    /**
+     * Đọc sheet đầu tiên của file xlsx bằng SAX trên XSSFReader: từng dòng được chuyển
+     * thẳng thành Course, không dựng cả workbook trong bộ nhớ như XSSFWorkbook.
+     * Cột giống file CSV: semester, code, name, credits, grade, [student]; dòng đầu là header,
+     * cột student chỉ được đọc khi header đặt tên nó.
+     */
+    private static void readXlsx(Path source, List<Course> courses, ValueDictionary dictionary, ParseErrors errors)
+            throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(source.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) return;
+
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XlsxSheetHandler(strings, dictionary, courses, errors));
+                parser.parse(new InputSource(sheet));
+            }
+        }
+    }
+
+    /**
+     * Handler SAX cho sheet xml: gom giá trị thô của 5 cột đầu trong một dòng và tạo
+     * Course khi gặp thẻ đóng row. Không dùng XSSFSheetXMLHandler vì nó dựng
+     * XSSFRichTextString (xmlbeans) cho mỗi ô chuỗi, chậm hơn nhiều lần so với CSV.
+     * Header nhận theo nội dung: các dòng đứng trước dòng dữ liệu đầu tiên mà ô tín chỉ
+     * không phải số (header, dòng tiêu đề) được bỏ qua thay vì báo lỗi.
+     */
+    private static class XlsxSheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable strings;
+        // Shared string đã giải mã, mỗi chỉ số chỉ giải mã một lần
+        private final String[] decoded;
+        private final ValueDictionary dictionary;
+        private final List<Course> courses;
+        private final ParseErrors errors;
+        private final String[] cells = new String[MAX_FIELDS];
+        private final StringBuilder text = new StringBuilder();
+        // Header có cột student ở vị trí thứ 6
+        private boolean withStudent;
+        // Đã gặp dòng dữ liệu, từ đây mọi dòng đều được parse như dữ liệu
+        private boolean inData;
+        private boolean inValue;
+        // Đang trong rPh (phiên âm), Excel không hiển thị phần này
+        private boolean inPhonetic;
+        private boolean hasValue;
+        private long rowNumber;
+        private int col;
+        private String type;
+
+        XlsxSheetHandler(ReadOnlySharedStringsTable strings, ValueDictionary dictionary, List<Course> courses,
+                         ParseErrors errors) {
+            this.strings = strings;
+            this.dictionary = dictionary;
+            this.decoded = new String[strings.getCount()];
+            this.courses = courses;
+            this.errors = errors;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            switch (localName) {
+                case "row" -> {
+                    Arrays.fill(cells, null);
+                    // Thuộc tính r là số dòng trong sheet (tính từ 1), có thể vắng mặt
+                    String r = attrs.getValue("r");
+                    long parsed = r == null ? -1 : parseDigits(r, 0, r.length());
+                    rowNumber = parsed > 0 ? parsed : rowNumber + 1;
+                    col = -1;
+                }
+                case "c" -> {
+                    // Thiếu thuộc tính r thì ô nằm ngay sau ô trước đó
+                    String r = attrs.getValue("r");
+                    col = r == null ? col + 1 : columnIndex(r);
+                    type = attrs.getValue("t");
+                    hasValue = false;
+                    text.setLength(0);
+                }
+                case "v" -> inValue = true;
+                // Chuỗi inline có thể gồm nhiều run <r><t>, nối tất cả các run lại
+                case "t" -> inValue = !inPhonetic;
+                case "rPh" -> inPhonetic = true;
+                default -> { }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "t" -> {
+                    inValue = false;
+                    hasValue = true;
+                }
+                case "rPh" -> inPhonetic = false;
+                case "c" -> {
+                    if (hasValue && col >= 0 && col < cells.length) cells[col] = cellValue();
+                }
+                case "row" -> endRow();
+                default -> { }
+            }
+        }
+
+        private String cellValue() {
+            if (!"s".equals(type)) return text.toString();
+            long idx = parseDigits(text, 0, text.length());
+            if (idx < 0 || idx >= decoded.length) return "";
+            int i = (int) idx;
+            if (decoded[i] == null) decoded[i] = strings.getItemAt(i).getString();
+            return decoded[i];
+        }
+
+        private void endRow() {
+            int present = 0;
+            for (int i = 0; i < FIELD_COUNT; i++) {
+                if (cells[i] != null) present++;
+            }
+            if (present == 0) return;
+            // Ô số được lưu dạng "3" hoặc "3.0"
+            String creditsText = cells[3] == null ? "" : cells[3].trim();
+            int len = creditsText.endsWith(".0") ? creditsText.length() - 2 : creditsText.length();
+            long credits = len > MAX_CREDIT_DIGITS ? -1 : parseDigits(creditsText, 0, len);
+            if (!inData && credits < 0) { // header hoặc dòng tiêu đề
+                withStudent = namesStudent(cells);
+                return;
+            }
+            inData = true;
+            // Excel không lưu ô trống nên ô điểm trống là điểm rỗng, như trường rỗng trong CSV
+            int required = cells[4] == null ? present + 1 : present;
+            if (required < FIELD_COUNT) {
+                errors.add(rowNumber, "thiếu cột (có " + present + "/" + FIELD_COUNT + ")");
+                return;
+            }
+            if (credits < 0) {
+                errors.add(rowNumber, "số tín chỉ không hợp lệ: \"" + creditsText + "\"");
+                return;
+            }
+            courses.add(new Course(
+                    dictionary.canonical(cells[1].trim()),
+                    dictionary.canonical(cells[2].trim()),
+                    (int) credits,
+                    cells[4] == null ? "" : dictionary.canonical(cells[4].trim()),
+                    dictionary.canonical(cells[0].trim()),
+                    !withStudent || cells[5] == null ? "" : dictionary.canonical(cells[5].trim())));
+        }
+
+        // Đổi phần chữ của tham chiếu ô (vd "C12") sang chỉ số cột tính từ 0
+        private static int columnIndex(String ref) {
+            if (ref == null) return -1;
+            int col = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char ch = ref.charAt(i);
+                if (ch < 'A' || ch > 'Z') break;
+                col = col * 26 + (ch - 'A' + 1);
+            }
+            return col - 1;
+        }
+    }
+
+    // Số nguyên không dấu trong s[from, to), -1 nếu rỗng hoặc có ký tự không phải chữ số
+    private static long parseDigits(CharSequence s, int from, int to) {
+        if (from >= to || to - from > 18) return -1;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') return -1;
+            value = value * 10 + (ch - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Gom lỗi parse theo số dòng. Chỉ giữ chi tiết ParseReport.MAX_ENTRIES lỗi đầu tiên.
+     */
+    private static class ParseErrors {
+        private final List<ParseReport.Entry> entries = new ArrayList<>();
+        private long count;
+
+        void add(long line, String reason) {
+            count++;
+            if (entries.size() < ParseReport.MAX_ENTRIES) entries.add(new ParseReport.Entry(line, reason));
+        }
+
+        // Nối lỗi của đoạn phía sau, số dòng của nó được cộng thêm lineOffset
+        void addAll(ParseErrors other, long lineOffset) {
+            count += other.count;
+            for (ParseReport.Entry e : other.entries) {
+                if (entries.size() >= ParseReport.MAX_ENTRIES) break;
+                entries.add(new ParseReport.Entry(e.line() + lineOffset, e.reason()));
+            }
+        }
+
+        ParseReport toReport() {
+            return count == 0 ? ParseReport.EMPTY : new ParseReport(count, List.copyOf(entries));
+        }
+    }
+
+    /**
+     * Kết quả parse của một dãy chunk liên tiếp. Số dòng trong errors tính từ 0 ở dòng
+     * đầu tiên của dãy; lineCount là số dòng của dãy, dùng để dời số dòng khi ghép.
+     */
+    private record ChunkResult(List<Course> courses, ParseErrors errors, long lineCount) { }
+
+    /**
+     * Cộng dồn số byte các chunk đã parse xong (từ nhiều luồng) và báo tỉ lệ.
+     */
+    private record ChunkProgress(long total, DoubleConsumer listener, AtomicLong done) {
+        ChunkProgress(long total, DoubleConsumer listener) {
+            this(total, listener, new AtomicLong());
+        }
+
+        void add(long bytes) {
+            listener.accept((double) done.addAndGet(bytes) / total);
+        }
+    }
+
+    // ForkJoinTask là Serializable nhưng task chỉ sống trong pool, không bao giờ được serialize
+    @SuppressWarnings("serial")
+    private static class ChunkTask extends RecursiveTask<ChunkResult> {
+        private final FileChannel channel;
+        private final ValueDictionary dictionary;
+        // FIELD_COUNT, hoặc MAX_FIELDS nếu file có cột student
+        private final int maxFields;
+        private final List<long[]> ranges;
+        private final int lo;
+        private final int hi;
+        private final ChunkProgress progress;
+
+        ChunkTask(FileChannel channel, ValueDictionary dictionary, int maxFields, List<long[]> ranges, int lo, int hi,
+                  ChunkProgress progress) {
+            this.channel = channel;
+            this.dictionary = dictionary;
+            this.maxFields = maxFields;
+            this.ranges = ranges;
+            this.lo = lo;
+            this.hi = hi;
+            this.progress = progress;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            if (hi - lo == 1) {
+                long[] range = ranges.get(lo);
+                ChunkResult result = parseRange(range);
+                progress.add(range[1] - range[0]);
+                return result;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            ChunkTask left = new ChunkTask(channel, dictionary, maxFields, ranges, lo, mid, progress);
+            ChunkTask right = new ChunkTask(channel, dictionary, maxFields, ranges, mid, hi, progress);
+            right.fork();
+            ChunkResult l = left.compute();
+            ChunkResult r = right.join();
+
+            List<Course> merged = new ArrayList<>(l.courses().size() + r.courses().size());
+            merged.addAll(l.courses());
+            merged.addAll(r.courses());
+            l.errors().addAll(r.errors(), l.lineCount());
+            return new ChunkResult(merged, l.errors(), l.lineCount() + r.lineCount());
+        }
+
+        private ChunkResult parseRange(long[] range) {
+            byte[] bytes = new byte[(int) (range[1] - range[0])];
+            try {
+                ByteBuffer target = ByteBuffer.wrap(bytes);
+                while (target.hasRemaining()) {
+                    if (channel.read(target, range[0] + target.position()) < 0) {
+                        throw new EOFException("File bị cắt ngắn trong lúc đọc");
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            ValueDictionary.Local values = dictionary.local();
+            ParseErrors errors = new ParseErrors();
+            List<Course> courses = new ArrayList<>();
+            // Vị trí [đầu, cuối) của các trường trong dòng đang xét, dùng lại cho mọi dòng
+            int[] fields = new int[MAX_FIELDS * 2];
+            long line = 0;
+            int pos = 0;
+            int len = bytes.length;
+            while (pos < len) {
+                int end = pos;
+                while (end < len && bytes[end] != '\n') end++;
+                int next = end + 1;
+                if (end > pos && bytes[end - 1] == '\r') end--;
+                parseLine(bytes, pos, end, maxFields, fields, values, courses, errors, line);
+                line++;
+                pos = next;
+            }
+            values.flushStats();
+            return new ChunkResult(courses, errors, line);
+        }
+    }
+
+    /**
+     * Parse một dòng CSV trực tiếp trên byte: tách trường theo vị trí dấu phẩy, trim
+     * khoảng trắng ASCII, tín chỉ đọc từng chữ số. Dòng trống bị bỏ qua; dòng thiếu cột
+     * hoặc tín chỉ không hợp lệ được ghi vào errors thay vì ném exception.
+     * Chỉ đọc tối đa maxFields trường: cột thứ 6 (student) chỉ được đọc khi maxFields là
+     * MAX_FIELDS và có thể vắng; các cột thừa sau đó bị bỏ qua.
+     */
+    private static void parseLine(byte[] b, int from, int to, int maxFields, int[] fields, ValueDictionary.Local values,
+                                  List<Course> courses, ParseErrors errors, long line) {
+        int count = 0;
+        int start = from;
+        for (int i = from; i < to && count < maxFields - 1; i++) {
+            if (b[i] == ',') {
+                fields[count * 2] = start;
+                fields[count * 2 + 1] = i;
+                count++;
+                start = i + 1;
+            }
+        }
+        // Trường cuối kéo tới hết dòng, hoặc tới dấu phẩy kế tiếp nếu còn cột thừa
+        int end = start;
+        while (end < to && b[end] != ',') end++;
+        fields[count * 2] = start;
+        fields[count * 2 + 1] = end;
+        count++;
+        for (int f = 0; f < count; f++) {
+            int s = fields[f * 2];
+            int e = fields[f * 2 + 1];
+            while (s < e && (b[s] & 0xFF) <= ' ') s++;
+            while (e > s && (b[e - 1] & 0xFF) <= ' ') e--;
+            fields[f * 2] = s;
+            fields[f * 2 + 1] = e;
+        }
+
+        if (count == 1 && fields[0] == fields[1]) return; // dòng trống
+        if (count < FIELD_COUNT) {
+            errors.add(line, "thiếu cột (có " + count + "/" + FIELD_COUNT + ")");
+            return;
+        }
+
+        int credits = parseCredits(b, fields[6], fields[7]);
+        if (credits < 0) {
+            String text = new String(b, fields[6], fields[7] - fields[6], StandardCharsets.UTF_8);
+            errors.add(line, "số tín chỉ không hợp lệ: \"" + text + "\"");
+            return;
+        }
+        courses.add(new Course(
+                values.canonical(b, fields[2], fields[3] - fields[2]),
+                values.canonical(b, fields[4], fields[5] - fields[4]),
+                credits,
+                values.canonical(b, fields[8], fields[9] - fields[8]),
+                values.canonical(b, fields[0], fields[1] - fields[0]),
+                count > FIELD_COUNT ? values.canonical(b, fields[10], fields[11] - fields[10]) : ""));
+    }
+
+    // Số tín chỉ trong b[from, to), -1 nếu rỗng, có ký tự không phải chữ số hoặc quá dài
+    private static int parseCredits(byte[] b, int from, int to) {
+        if (from >= to || to - from > MAX_CREDIT_DIGITS) return -1;
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
 }
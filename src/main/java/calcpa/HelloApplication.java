@@ -1,20 +1,18 @@
 package calcpa;
 
-import calcpa.model.Course;
-import calcpa.service.CourseService;
+import calcpa.controller.MainController;
+import calcpa.service.CourseJournal;
+import calcpa.service.DataFileWatcher;
+import calcpa.service.PersistenceService;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
-import java.util.List;
-
 public class HelloApplication extends Application {
 
     @Override
     public void start(Stage stage) throws Exception {
-        CourseService.loadData();
-
         FXMLLoader loader = new FXMLLoader(
                 HelloApplication.class.getResource("main.fxml")
         );
@@ -23,6 +21,17 @@ public class HelloApplication extends Application {
         stage.setScene(scene);
         stage.setTitle("CPA App");
         stage.show();
+
+        // Hiện cửa sổ trước (các trang đang rỗng), dữ liệu được đọc ở luồng nền
+        loader.<MainController>getController().loadDataAsync();
+    }
+
+    @Override
+    public void stop() {
+        DataFileWatcher.stop();
+        // Ghi nốt các thay đổi còn chờ trên luồng ghi nền trước khi thoát
+        PersistenceService.shutdown();
+        CourseJournal.close();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,26 @@
+package calcpa;
+
+import java.util.List;
+
+/**
+ * Báo cáo các dòng lỗi khi đọc file dữ liệu. Dòng lỗi bị bỏ qua, các dòng còn lại vẫn được đọc.
+ * Chỉ giữ chi tiết của tối đa MAX_ENTRIES dòng lỗi đầu tiên, errorCount là tổng số dòng lỗi.
+ */
+public record ParseReport(long errorCount, List<Entry> errors) {
+    public static final int MAX_ENTRIES = 1000;
+    public static final ParseReport EMPTY = new ParseReport(0, List.of());
+
+    /**
+     * @param line số thứ tự dòng trong file (tính từ 1, gồm cả header)
+     */
+    public record Entry(long line, String reason) {
+        @Override
+        public String toString() {
+            return "Dòng " + line + ": " + reason;
+        }
+    }
+
+    public boolean hasErrors() {
+        return errorCount > 0;
+    }
+}
@@ -0,0 +1,130 @@
+package calcpa;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Từ điển dùng khi load dữ liệu: các giá trị lặp lại (kỳ, mã môn, tên môn, điểm) được
+ * quy về một instance String dùng chung thay vì mỗi dòng giữ một bản sao riêng.
+ * An toàn khi dùng từ nhiều luồng parse song song.
+ */
+public class ValueDictionary {
+    // Ước lượng chi phí một String trên heap 64-bit (compressed oops): header String + header mảng byte
+    private static final int STRING_OVERHEAD_BYTES = 24 + 16;
+
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * Trả về instance dùng chung cho value (value là instance đầu tiên gặp được).
+     */
+    public String canonical(String value) {
+        if (value == null) return null;
+        String existing = values.putIfAbsent(value, value);
+        if (existing == null) return value;
+        shared.increment();
+        bytesSaved.add(STRING_OVERHEAD_BYTES + value.length());
+        return existing;
+    }
+
+    private void addShared(long count, long bytes) {
+        shared.add(count);
+        bytesSaved.add(bytes);
+    }
+
+    /**
+     * Tạo bộ đệm tra cứu theo byte cho một luồng parse (không dùng chung giữa các luồng).
+     */
+    public Local local() {
+        return new Local();
+    }
+
+    /**
+     * Bộ đệm tra cứu trực tiếp trên đoạn byte của file: giá trị đã gặp được trả về mà
+     * không cần tạo String tạm. Chỉ giá trị mới mới được decode và đưa vào từ điển chung.
+     * Dùng bảng băm địa chỉ mở, giới hạn MAX_ENTRIES để cột toàn giá trị khác nhau
+     * không làm bộ đệm phình ra.
+     */
+    public final class Local {
+        private static final int MAX_ENTRIES = 1 << 16;
+
+        private byte[][] keys = new byte[256][];
+        private int[] hashes = new int[256];
+        private String[] values = new String[256];
+        private int size;
+        private long hits;
+        private long hitBytes;
+
+        public String canonical(byte[] buf, int off, int len) {
+            int h = 1;
+            for (int i = off; i < off + len; i++) h = 31 * h + buf[i];
+            int mask = keys.length - 1;
+            int idx = h & mask;
+            while (keys[idx] != null) {
+                if (hashes[idx] == h && Arrays.equals(keys[idx], 0, keys[idx].length, buf, off, off + len)) {
+                    hits++;
+                    hitBytes += STRING_OVERHEAD_BYTES + len;
+                    return values[idx];
+                }
+                idx = (idx + 1) & mask;
+            }
+
+            String value = ValueDictionary.this.canonical(new String(buf, off, len, StandardCharsets.UTF_8));
+            if (size < MAX_ENTRIES) {
+                keys[idx] = Arrays.copyOfRange(buf, off, off + len);
+                hashes[idx] = h;
+                values[idx] = value;
+                if (++size * 2 > keys.length) resize();
+            }
+            return value;
+        }
+
+        private void resize() {
+            byte[][] oldKeys = keys;
+            int[] oldHashes = hashes;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            hashes = new int[keys.length];
+            values = new String[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) continue;
+                int idx = oldHashes[i] & mask;
+                while (keys[idx] != null) idx = (idx + 1) & mask;
+                keys[idx] = oldKeys[i];
+                hashes[idx] = oldHashes[i];
+                values[idx] = oldValues[i];
+            }
+        }
+
+        /**
+         * Cộng số lần dùng chung của bộ đệm này vào thống kê của từ điển (gọi khi parse xong).
+         */
+        public void flushStats() {
+            addShared(hits, hitBytes);
+            hits = 0;
+            hitBytes = 0;
+        }
+    }
+
+    public int distinctValues() {
+        return values.size();
+    }
+
+    /**
+     * Số lần một giá trị được thay bằng instance đã có (số bản sao không còn bị giữ lại).
+     */
+    public long sharedValues() {
+        return shared.sum();
+    }
+
+    /**
+     * Ước lượng số byte heap không còn bị giữ lại nhờ dùng chung instance.
+     */
+    public long estimatedBytesSaved() {
+        return bytesSaved.sum();
+    }
+}
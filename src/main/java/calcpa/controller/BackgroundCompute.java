@@ -0,0 +1,77 @@
+package calcpa.controller;
+
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.concurrent.Task;
+
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Một kênh tính toán nền của trang: phần việc chạy trên virtual thread, kết quả (bất biến hoặc
+ * không còn được luồng nền giữ) được áp trên luồng UI.
+ *
+ * Mỗi lần submit hủy phần việc trước của cùng kênh nếu chưa xong, nên chỉ kết quả của yêu cầu
+ * mới nhất được áp. busyProperty() cho biết còn phần việc nào của mọi kênh đang chạy, để
+ * MainController hiện vòng quay. Chỉ gọi trên luồng UI.
+ */
+final class BackgroundCompute {
+    private static final ReadOnlyBooleanWrapper busy = new ReadOnlyBooleanWrapper();
+    private static int running;
+
+    private final String name;
+    private Task<?> current;
+
+    BackgroundCompute(String name) {
+        this.name = name;
+    }
+
+    static ReadOnlyBooleanProperty busyProperty() {
+        return busy.getReadOnlyProperty();
+    }
+
+    /**
+     * Chạy work ở luồng nền rồi gọi apply với kết quả trên luồng UI, trừ khi đã có yêu cầu mới
+     * hơn. Phần việc lâu nên kiểm tra Thread.interrupted() để dừng sớm khi bị hủy.
+     */
+    <T> void submit(Callable<T> work, Consumer<? super T> apply) {
+        cancel();
+        Task<T> task = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                return work.call();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            finished();
+            if (current != task) return;
+            current = null;
+            apply.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            finished();
+            if (current == task) current = null;
+            task.getException().printStackTrace();
+        });
+        task.setOnCancelled(e -> finished());
+
+        current = task;
+        running++;
+        busy.set(true);
+        Thread.ofVirtual().name("compute-" + name).start(task);
+    }
+
+    /**
+     * Hủy phần việc đang chạy (nếu có), kết quả của nó bị bỏ.
+     */
+    void cancel() {
+        if (current == null) return;
+        current.cancel(true);
+        current = null;
+    }
+
+    private static void finished() {
+        running--;
+        busy.set(running > 0);
+    }
+}
@@ -0,0 +1,534 @@
+package calcpa.controller;
+
+import calcpa.service.CohortService;
+import javafx.animation.AnimationTimer;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Biểu đồ đường cho số lượng series lớn (cả khóa: mỗi sinh viên một đường), vẽ thẳng lên
+ * Canvas thay vì tạo node + Tooltip cho từng điểm như LineChart.
+ *
+ * Các series được SeriesRaster rút về độ phân giải pixel và tô theo mật độ ở luồng nền, thành
+ * một tile rộng gấp TILE_SPAN lần vùng nhìn. Mỗi khung hình chỉ vẽ phần tile đang nhìn thấy
+ * (kéo ngang không phải vẽ lại series, phóng to thì tạm co giãn tile cũ tới khi có tile mới),
+ * trục, nhãn và series đang trỏ chuột. Trỏ chuột tìm series gần nhất tại kỳ dưới con trỏ.
+ *
+ * Kéo chuột để di chuyển, cuộn để phóng to / thu nhỏ quanh con trỏ, nhấp đúp để xem toàn bộ.
+ */
+public final class CanvasChart extends Region {
+    private static final double LEFT = 48;
+    private static final double RIGHT = 12;
+    private static final double TOP = 20;
+    private static final double BOTTOM = 24;
+    private static final double HIT_RADIUS = 6;
+    private static final double LABEL_SPACING = 64;
+    private static final double MAX_PIXELS_PER_CATEGORY = 240;
+    // Tile rộng gấp bấy nhiêu lần vùng nhìn để kéo ngang không phải vẽ lại
+    private static final int TILE_SPAN = 3;
+    private static final Font FONT = Font.font(11);
+
+    /**
+     * Dữ liệu của biểu đồ: ma trận series x category, values[s * categories.size() + i] là giá
+     * trị của series s tại category i (NaN nếu không có). Không sửa sau khi tạo.
+     */
+    public record Data(List<String> categories, List<String> names, float[] values) {
+        public static final Data EMPTY = new Data(List.of(), List.of(), new float[0]);
+
+        /**
+         * Ghép các map category -> giá trị thành ma trận, category theo thứ tự tăng dần.
+         */
+        public static Data of(List<String> names, List<? extends Map<String, ? extends Number>> series) {
+            Set<String> all = new TreeSet<>();
+            for (Map<String, ? extends Number> s : series) all.addAll(s.keySet());
+            List<String> categories = List.copyOf(all);
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < categories.size(); i++) index.put(categories.get(i), i);
+
+            float[] values = new float[series.size() * categories.size()];
+            Arrays.fill(values, Float.NaN);
+            for (int s = 0; s < series.size(); s++) {
+                int base = s * categories.size();
+                for (Map.Entry<String, ? extends Number> e : series.get(s).entrySet()) {
+                    values[base + index.get(e.getKey())] = e.getValue().floatValue();
+                }
+            }
+            return new Data(categories, List.copyOf(names), values);
+        }
+
+        /**
+         * Một series cho mỗi sinh viên trong cohort, null nếu có ít hơn hai sinh viên.
+         */
+        static Data ofCohort(List<CohortService.StudentSeries> cohort,
+                             Function<CohortService.StudentSeries, Map<String, ? extends Number>> metric) {
+            if (cohort.size() < 2) return null;
+            List<String> names = new ArrayList<>(cohort.size());
+            List<Map<String, ? extends Number>> series = new ArrayList<>(cohort.size());
+            for (CohortService.StudentSeries s : cohort) {
+                names.add(s.studentId());
+                series.add(metric.apply(s));
+            }
+            return of(names, series);
+        }
+
+        int seriesCount() {
+            return names.size();
+        }
+
+        float value(int series, int category) {
+            return values[series * categories.size() + category];
+        }
+    }
+
+    // Ảnh series đã vẽ cho một đoạn category [origin, origin + width / pixelsPerCategory)
+    private record Tile(Data data, double origin, double pixelsPerCategory, double lower, double upper,
+                        int width, int height, int[] argb) {
+        double end() {
+            return origin + width / pixelsPerCategory;
+        }
+    }
+
+    private final Canvas canvas = new Canvas();
+    private final BackgroundCompute rasterizer = new BackgroundCompute("chart-raster");
+    private final AnimationTimer frame = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            scheduled = false;
+            draw();
+        }
+    };
+    private boolean scheduled;
+
+    private Data data = Data.EMPTY;
+    private double lower = 0;
+    private double upper = 4;
+    private boolean autoRange;
+    private Color color = Color.web("#ff6f00");
+    private String yLabel = "";
+    private String valueFormat = "%.2f";
+
+    // Vùng nhìn: tọa độ category ở mép trái (điểm i nằm ở i + 0.5) và số pixel mỗi category;
+    // pixelsPerCategory = 0 nghĩa là khớp toàn bộ
+    private double first;
+    private double pixelsPerCategory;
+
+    private Tile tile;
+    private Tile requested;
+    private WritableImage image;
+
+    private int hoverSeries = -1;
+    private int hoverCategory = -1;
+    private double mouseX;
+    private double mouseY;
+    private double dragX;
+
+    public CanvasChart() {
+        // Canvas được đặt kích thước trong layoutChildren
+        canvas.setManaged(false);
+        getChildren().add(canvas);
+        getStyleClass().add("canvas-chart");
+
+        setOnMousePressed(e -> dragX = e.getX());
+        setOnMouseDragged(e -> {
+            first -= (e.getX() - dragX) / pixelsPerCategory();
+            dragX = e.getX();
+            clampView();
+            hoverSeries = -1;
+            requestDraw();
+        });
+        setOnScroll(e -> {
+            if (data.categories().isEmpty() || e.getDeltaY() == 0) return;
+            double ppc = pixelsPerCategory();
+            double anchor = first + (e.getX() - LEFT) / ppc;
+            double zoomed = Math.max(fitPixelsPerCategory(), Math.min(MAX_PIXELS_PER_CATEGORY, ppc * Math.pow(1.0015, e.getDeltaY())));
+            pixelsPerCategory = zoomed;
+            first = anchor - (e.getX() - LEFT) / zoomed;
+            clampView();
+            hover(e.getX(), e.getY());
+            requestDraw();
+        });
+        setOnMouseClicked(e -> {
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
+                pixelsPerCategory = 0;
+                first = 0;
+                requestDraw();
+            }
+        });
+        setOnMouseMoved(e -> hover(e.getX(), e.getY()));
+        setOnMouseExited(e -> {
+            if (hoverSeries < 0) return;
+            hoverSeries = -1;
+            requestDraw();
+        });
+    }
+
+    /**
+     * Thay dữ liệu. Danh sách category đổi thì vùng nhìn trở về khớp toàn bộ.
+     */
+    public void setData(Data data) {
+        Data next = data == null ? Data.EMPTY : data;
+        if (!next.categories().equals(this.data.categories())) {
+            pixelsPerCategory = 0;
+            first = 0;
+        }
+        this.data = next;
+        if (autoRange) upper = niceCeil(maxValue(next));
+        hoverSeries = -1;
+        requestDraw();
+    }
+
+    public Data getData() {
+        return data;
+    }
+
+    /**
+     * Cố định trục Y trong [lower, upper].
+     */
+    public void setYRange(double lower, double upper) {
+        autoRange = false;
+        this.lower = lower;
+        this.upper = upper;
+        requestDraw();
+    }
+
+    /**
+     * Trục Y từ 0 tới giá trị lớn nhất của dữ liệu (làm tròn lên).
+     */
+    public void setAutoRange(boolean autoRange) {
+        this.autoRange = autoRange;
+        if (autoRange) {
+            lower = 0;
+            upper = niceCeil(maxValue(data));
+        }
+        requestDraw();
+    }
+
+    public boolean isAutoRange() {
+        return autoRange;
+    }
+
+    public void setColor(Color color) {
+        this.color = color;
+        tile = null;
+        requestDraw();
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public void setYLabel(String yLabel) {
+        this.yLabel = yLabel == null ? "" : yLabel;
+        requestDraw();
+    }
+
+    public String getYLabel() {
+        return yLabel;
+    }
+
+    /**
+     * Định dạng giá trị khi trỏ chuột (String.format), mặc định "%.2f".
+     */
+    public void setValueFormat(String valueFormat) {
+        this.valueFormat = valueFormat;
+    }
+
+    public String getValueFormat() {
+        return valueFormat;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        if (canvas.getWidth() != getWidth() || canvas.getHeight() != getHeight()) {
+            canvas.setWidth(getWidth());
+            canvas.setHeight(getHeight());
+            clampView();
+            requestDraw();
+        }
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return 400;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return 250;
+    }
+
+    private void requestDraw() {
+        if (scheduled) return;
+        scheduled = true;
+        // Vẽ một lần mỗi khung hình dù có bao nhiêu sự kiện chuột
+        frame.start();
+    }
+
+    private double plotWidth() {
+        return Math.max(1, canvas.getWidth() - LEFT - RIGHT);
+    }
+
+    private double plotHeight() {
+        return Math.max(1, canvas.getHeight() - TOP - BOTTOM);
+    }
+
+    private double fitPixelsPerCategory() {
+        return plotWidth() / Math.max(1, data.categories().size());
+    }
+
+    private double pixelsPerCategory() {
+        return Math.max(pixelsPerCategory, fitPixelsPerCategory());
+    }
+
+    private double visibleCategories() {
+        return plotWidth() / pixelsPerCategory();
+    }
+
+    private void clampView() {
+        double maxFirst = Math.max(0, data.categories().size() - visibleCategories());
+        first = Math.max(0, Math.min(maxFirst, first));
+    }
+
+    private double yOf(double value) {
+        return TOP + (upper - value) / (upper - lower) * (plotHeight() - 1);
+    }
+
+    private double xOf(int category) {
+        return LEFT + (category + 0.5 - first) * pixelsPerCategory();
+    }
+
+    // Series gần con trỏ nhất (theo chiều dọc) tại category dưới con trỏ
+    private void hover(double x, double y) {
+        mouseX = x;
+        mouseY = y;
+        int series = -1;
+        int category = (int) Math.floor(first + (x - LEFT) / pixelsPerCategory());
+        if (x >= LEFT && x <= LEFT + plotWidth() && category >= 0 && category < data.categories().size()) {
+            double best = HIT_RADIUS;
+            for (int s = 0; s < data.seriesCount(); s++) {
+                float v = data.value(s, category);
+                if (Float.isNaN(v)) continue;
+                double d = Math.abs(yOf(v) - y);
+                if (d <= best) {
+                    best = d;
+                    series = s;
+                }
+            }
+        }
+        // Đang trỏ vào một series thì vẽ lại để hộp giá trị đi theo con trỏ
+        boolean changed = series >= 0 || hoverSeries >= 0;
+        hoverSeries = series;
+        hoverCategory = category;
+        if (changed) requestDraw();
+    }
+
+    private void draw() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        gc.clearRect(0, 0, width, height);
+        if (width <= LEFT + RIGHT || height <= TOP + BOTTOM) return;
+        gc.setFont(FONT);
+        drawYAxis(gc);
+        if (data.categories().isEmpty()) return;
+
+        ensureTile();
+        drawTile(gc);
+        drawCategories(gc, height);
+        if (hoverSeries >= 0 && hoverSeries < data.seriesCount()) drawHover(gc);
+    }
+
+    private void drawYAxis(GraphicsContext gc) {
+        double step = niceStep((upper - lower) / 5);
+        gc.setLineWidth(1);
+        gc.setTextAlign(TextAlignment.RIGHT);
+        gc.setTextBaseline(VPos.CENTER);
+        for (double v = Math.ceil(lower / step) * step; v <= upper + step * 1e-6; v += step) {
+            double y = Math.round(yOf(v)) + 0.5;
+            gc.setStroke(Color.gray(0.9));
+            gc.strokeLine(LEFT, y, LEFT + plotWidth(), y);
+            gc.setFill(Color.gray(0.35));
+            gc.fillText(trimNumber(v), LEFT - 6, y);
+        }
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.TOP);
+        gc.fillText(yLabel, 4, 2);
+    }
+
+    private void drawCategories(GraphicsContext gc, double height) {
+        double ppc = pixelsPerCategory();
+        int every = Math.max(1, (int) Math.ceil(LABEL_SPACING / ppc));
+        int from = Math.max(0, (int) Math.floor(first));
+        int to = Math.min(data.categories().size() - 1, (int) Math.ceil(first + visibleCategories()));
+        gc.setFill(Color.gray(0.35));
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.BOTTOM);
+        for (int i = from - from % every; i <= to; i += every) {
+            if (i < from) continue;
+            gc.fillText(data.categories().get(i), xOf(i), height - 4);
+        }
+    }
+
+    // Vẽ phần tile nằm trong vùng nhìn, co giãn nếu tile được vẽ ở mức phóng khác
+    private void drawTile(GraphicsContext gc) {
+        if (tile == null || image == null) return;
+        double ppc = pixelsPerCategory();
+        double srcLeft = (first - tile.origin()) * tile.pixelsPerCategory();
+        double srcRight = srcLeft + visibleCategories() * tile.pixelsPerCategory();
+        double clippedLeft = Math.max(0, srcLeft);
+        double clippedRight = Math.min(tile.width(), srcRight);
+        if (clippedRight <= clippedLeft) return;
+        double scale = ppc / tile.pixelsPerCategory();
+        gc.drawImage(image, clippedLeft, 0, clippedRight - clippedLeft, tile.height(),
+                LEFT + (clippedLeft - srcLeft) * scale, TOP, (clippedRight - clippedLeft) * scale, plotHeight());
+    }
+
+    private void drawHover(GraphicsContext gc) {
+        int n = data.categories().size();
+        int from = Math.max(0, (int) Math.floor(first) - 1);
+        int to = Math.min(n - 1, (int) Math.ceil(first + visibleCategories()) + 1);
+        List<Double> xs = new ArrayList<>();
+        List<Double> ys = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            float v = data.value(hoverSeries, i);
+            if (Float.isNaN(v)) continue;
+            xs.add(xOf(i));
+            ys.add(yOf(v));
+        }
+        gc.save();
+        gc.beginPath();
+        gc.rect(LEFT, TOP, plotWidth(), plotHeight());
+        gc.clip();
+        gc.setStroke(color.darker());
+        gc.setLineWidth(2);
+        double[] px = new double[xs.size()];
+        double[] py = new double[ys.size()];
+        for (int i = 0; i < px.length; i++) {
+            px[i] = xs.get(i);
+            py[i] = ys.get(i);
+        }
+        gc.strokePolyline(px, py, px.length);
+        gc.restore();
+
+        float value = data.value(hoverSeries, hoverCategory);
+        if (Float.isNaN(value)) return;
+        double x = xOf(hoverCategory);
+        double y = yOf(value);
+        gc.setFill(Color.WHITE);
+        gc.fillOval(x - 4, y - 4, 8, 8);
+        gc.setStroke(color.darker());
+        gc.strokeOval(x - 4, y - 4, 8, 8);
+
+        String name = data.names().get(hoverSeries);
+        String text = (name.isEmpty() ? "" : name + "  ") + data.categories().get(hoverCategory)
+                + ": " + String.format(valueFormat, value);
+        Text measure = new Text(text);
+        measure.setFont(FONT);
+        double w = measure.getLayoutBounds().getWidth() + 10;
+        double h = measure.getLayoutBounds().getHeight() + 6;
+        double boxX = Math.min(mouseX + 12, canvas.getWidth() - w - 2);
+        double boxY = Math.max(2, mouseY - h - 8);
+        gc.setFill(Color.rgb(255, 255, 255, 0.9));
+        gc.fillRect(boxX, boxY, w, h);
+        gc.setStroke(Color.gray(0.6));
+        gc.setLineWidth(1);
+        gc.strokeRect(boxX + 0.5, boxY + 0.5, w - 1, h - 1);
+        gc.setFill(Color.gray(0.1));
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.TOP);
+        gc.fillText(text, boxX + 5, boxY + 3);
+    }
+
+    /**
+     * Yêu cầu vẽ lại tile ở luồng nền nếu tile hiện có (hoặc đang vẽ) không còn khớp dữ liệu,
+     * mức phóng, chiều cao hay không phủ hết vùng nhìn.
+     */
+    private void ensureTile() {
+        if (covers(tile) || covers(requested)) return;
+        double ppc = pixelsPerCategory();
+        double visible = visibleCategories();
+        int n = data.categories().size();
+        double origin = Math.max(0, first - visible * (TILE_SPAN - 1) / 2.0);
+        double span = Math.min(n - origin, visible * TILE_SPAN);
+        int width = Math.max(1, (int) Math.ceil(span * ppc));
+        int height = Math.max(1, (int) plotHeight());
+
+        Data d = data;
+        double lo = lower;
+        double hi = upper;
+        int rgb = (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8
+                | (int) Math.round(color.getBlue() * 255);
+        // Nhiều series thì mỗi đường nhạt đi để vùng dày đặc vẫn phân biệt được
+        double alpha = Math.min(1.0, Math.max(0.02, 2.0 / Math.sqrt(Math.max(1, d.seriesCount()))));
+        Tile request = new Tile(d, origin, ppc, lo, hi, width, height, null);
+        requested = request;
+        rasterizer.submit(() -> {
+            SeriesRaster raster = new SeriesRaster(width, height);
+            raster.render(d.values(), d.seriesCount(), d.categories().size(), origin, ppc, lo, hi);
+            return new Tile(d, origin, ppc, lo, hi, width, height, raster.toArgb(rgb, alpha));
+        }, done -> {
+            if (requested == request) requested = null;
+            if (image == null || image.getWidth() != done.width() || image.getHeight() != done.height()) {
+                image = new WritableImage(done.width(), done.height());
+            }
+            image.getPixelWriter().setPixels(0, 0, done.width(), done.height(),
+                    PixelFormat.getIntArgbInstance(), done.argb(), 0, done.width());
+            tile = done;
+            requestDraw();
+        });
+    }
+
+    private boolean covers(Tile t) {
+        if (t == null || t.data() != data || t.pixelsPerCategory() != pixelsPerCategory()
+                || t.lower() != lower || t.upper() != upper || t.height() != Math.max(1, (int) plotHeight())) {
+            return false;
+        }
+        double eps = 1e-9;
+        int n = data.categories().size();
+        boolean left = t.origin() <= first + eps;
+        boolean right = first + visibleCategories() <= t.end() + eps || t.end() >= n - eps;
+        return left && right;
+    }
+
+    private static double maxValue(Data data) {
+        double max = 0;
+        for (float v : data.values()) {
+            if (!Float.isNaN(v) && v > max) max = v;
+        }
+        return max;
+    }
+
+    private static double niceCeil(double value) {
+        if (value <= 0) return 1;
+        double step = niceStep(value / 5);
+        return Math.ceil(value / step) * step;
+    }
+
+    // Bước chia trục dạng 1, 2, 5 x 10^k gần raw nhất
+    private static double niceStep(double raw) {
+        if (raw <= 0) return 1;
+        double magnitude = Math.pow(10, Math.floor(Math.log10(raw)));
+        double r = raw / magnitude;
+        double nice = r < 1.5 ? 1 : r < 3 ? 2 : r < 7 ? 5 : 10;
+        return nice * magnitude;
+    }
+
+    private static String trimNumber(double v) {
+        double rounded = Math.round(v * 100) / 100.0;
+        return rounded == Math.rint(rounded) ? String.valueOf((long) rounded) : String.valueOf(rounded);
+    }
+}
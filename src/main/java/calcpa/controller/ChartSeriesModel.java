@@ -0,0 +1,140 @@
+package calcpa.controller;
+
+import javafx.collections.FXCollections;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.StackPane;
+import javafx.scene.shape.Circle;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Một series trên biểu đồ dashboard, cập nhật theo kiểu so khác: so map kỳ -> giá trị mới với
+ * các điểm đang hiển thị rồi chỉ thêm / xóa / sửa đúng các điểm khác nhau, nên bật/tắt một kỳ
+ * chỉ tốn công cho một điểm.
+ *
+ * Node của mỗi điểm (hình tròn + nhãn giá trị với biểu đồ đường, hoặc cột với biểu đồ cột) được
+ * dựng một lần kèm tooltip, khi điểm bị bỏ thì trả về pool để dùng lại cho điểm thêm sau. Kiểu
+ * hiển thị nằm trong dashboard.css (chart-point, chart-point-circle, chart-point-label).
+ */
+final class ChartSeriesModel {
+    private final XYChart<String, Number> chart;
+    private final XYChart.Series<String, Number> series = new XYChart.Series<>();
+    private final Function<Number, String> format;
+    // true: điểm có hình tròn + nhãn (biểu đồ đường); false: node trơn để chart vẽ cột
+    private final boolean labelled;
+
+    private final Map<String, Point> shown = new HashMap<>();
+    private final Deque<Point> pool = new ArrayDeque<>();
+
+    private static final class Point {
+        final StackPane node;
+        final Label label;
+        final Tooltip tooltip = new Tooltip();
+        XYChart.Data<String, Number> data;
+
+        Point(StackPane node, Label label) {
+            this.node = node;
+            this.label = label;
+            Tooltip.install(node, tooltip);
+        }
+    }
+
+    ChartSeriesModel(XYChart<String, Number> chart, String name, Function<Number, String> format, boolean labelled) {
+        this.chart = chart;
+        this.format = format;
+        this.labelled = labelled;
+        series.setName(name);
+    }
+
+    /**
+     * Hiển thị đúng các điểm trong values, theo thứ tự của map. Map rỗng thì gỡ series khỏi chart.
+     */
+    void setAll(Map<String, ? extends Number> values) {
+        if (values.isEmpty()) {
+            clear();
+            return;
+        }
+        if (!values.keySet().containsAll(shown.keySet())) {
+            series.getData().removeIf(data -> {
+                if (values.containsKey(data.getXValue())) return false;
+                release(shown.remove(data.getXValue()));
+                return true;
+            });
+        }
+        int index = 0;
+        for (Map.Entry<String, ? extends Number> e : values.entrySet()) {
+            Point p = shown.get(e.getKey());
+            if (p == null) {
+                p = acquire(e.getKey(), e.getValue());
+                shown.put(e.getKey(), p);
+                series.getData().add(index, p.data);
+            } else {
+                set(p, e.getValue());
+            }
+            index++;
+        }
+        if (!chart.getData().contains(series)) chart.getData().add(series);
+    }
+
+    void clear() {
+        if (shown.isEmpty()) return;
+        for (Point p : shown.values()) release(p);
+        shown.clear();
+        series.getData().clear();
+        chart.getData().remove(series);
+    }
+
+    /**
+     * Đặt danh sách category của trục, không đụng tới trục khi không đổi.
+     */
+    static void setCategories(CategoryAxis axis, List<String> categories) {
+        if (!axis.getCategories().equals(categories)) {
+            axis.setCategories(FXCollections.observableArrayList(categories));
+        }
+    }
+
+    private void set(Point p, Number value) {
+        if (p.data.getYValue().doubleValue() == value.doubleValue()) return;
+        p.data.setYValue(value);
+        showValue(p, value);
+    }
+
+    private void showValue(Point p, Number value) {
+        String text = format.apply(value);
+        if (p.label != null) p.label.setText(text);
+        p.tooltip.setText(text);
+    }
+
+    private Point acquire(String x, Number value) {
+        Point p = pool.poll();
+        // Node còn nằm trong chart (chưa gỡ xong) thì không dùng lại được
+        if (p == null || p.node.getParent() != null) p = newPoint();
+        // Chart thêm các style class series/data mỗi lần gắn node, nên đặt lại trước khi dùng
+        p.node.getStyleClass().setAll(labelled ? "chart-point" : "chart-bar");
+        p.data = new XYChart.Data<>(x, value);
+        p.data.setNode(p.node);
+        showValue(p, value);
+        return p;
+    }
+
+    private void release(Point p) {
+        if (p == null) return;
+        p.data = null;
+        pool.push(p);
+    }
+
+    private Point newPoint() {
+        if (!labelled) return new Point(new StackPane(), null);
+        Circle circle = new Circle(5);
+        circle.getStyleClass().add("chart-point-circle");
+        Label label = new Label();
+        label.getStyleClass().add("chart-point-label");
+        // Đặt label phía trên điểm
+        label.setTranslateY(-15);
+        return new Point(new StackPane(circle, label), label);
+    }
+}
@@ -0,0 +1,70 @@
+package calcpa.controller;
+
+import calcpa.model.Course;
+import calcpa.service.CohortService;
+import calcpa.service.CourseDelta;
+import calcpa.service.CourseService;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Số liệu từng sinh viên cho biểu đồ cả khóa, tính ở luồng nền. Giữ kết quả lần tính gần nhất
+ * để khi dữ liệu đổi chỉ tính lại các sinh viên có trong CourseDelta.
+ *
+ * Các sinh viên của những delta chưa được áp (bị hủy vì có yêu cầu mới hơn) được dồn lại
+ * cho lần tính sau. Chỉ gọi trên luồng UI.
+ */
+final class CohortSeries {
+    private final BackgroundCompute compute;
+    private final Function<CohortService.StudentSeries, Map<String, ? extends Number>> metric;
+    private final Consumer<CanvasChart.Data> apply;
+    // Kết quả đã áp gần nhất, null khi phải tính toàn khóa
+    private List<CohortService.StudentSeries> series;
+    private final Set<String> pending = new HashSet<>();
+
+    CohortSeries(String name, Function<CohortService.StudentSeries, Map<String, ? extends Number>> metric,
+                 Consumer<CanvasChart.Data> apply) {
+        this.compute = new BackgroundCompute(name);
+        this.metric = metric;
+        this.apply = apply;
+    }
+
+    /**
+     * Tính lại toàn khóa (reload, đổi thang điểm).
+     */
+    void reload() {
+        series = null;
+        pending.clear();
+        submit();
+    }
+
+    /**
+     * Chỉ tính lại các sinh viên có môn bị thêm, xóa hoặc sửa.
+     */
+    void update(CourseDelta delta) {
+        if (delta.isEmpty()) return;
+        pending.addAll(delta.affectedStudents());
+        submit();
+    }
+
+    private void submit() {
+        List<Course> courses = CourseService.snapshot().courses();
+        List<CohortService.StudentSeries> previous = series;
+        Set<String> students = Set.copyOf(pending);
+        compute.submit(() -> {
+            List<CohortService.StudentSeries> result = previous == null
+                    ? CohortService.computeAll(courses)
+                    : CohortService.recompute(previous, courses, students);
+            return new Result(result, CanvasChart.Data.ofCohort(result, metric));
+        }, result -> {
+            series = result.series();
+            pending.clear();
+            apply.accept(result.data());
+        });
+    }
+
+    private record Result(List<CohortService.StudentSeries> series, CanvasChart.Data data) {
+    }
+}
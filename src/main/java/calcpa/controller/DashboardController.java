@@ -1,24 +1,18 @@
 package calcpa.controller;
 
-
-import calcpa.model.Course;
-import calcpa.service.CourseService;
-import calcpa.service.GpaService;
-import javafx.collections.FXCollections;
+import calcpa.service.CohortService;
+import calcpa.service.CourseDelta;
+import calcpa.service.GpaCache;
+import calcpa.service.GradingScale;
 import javafx.fxml.FXML;
 import javafx.scene.chart.CategoryAxis;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.control.*;
 import javafx.scene.chart.LineChart;
-import javafx.scene.chart.StackedBarChart;
-import javafx.scene.chart.XYChart;
-import javafx.application.Platform;
-import javafx.scene.layout.StackPane;
-import javafx.scene.shape.Circle;
-import java.util.prefs.Preferences;
+import javafx.scene.layout.VBox;
 import java.util.*;
 
-public class DashboardController {
+public class DashboardController implements Page {
 
     @FXML private MenuButton semesterMenuButton;
     @FXML private LineChart<String, Number> gpaChart;
@@ -27,147 +21,104 @@ public class DashboardController {
     @FXML private CategoryAxis cpaXAxis;
     @FXML private NumberAxis gpaYAxis;
     @FXML private NumberAxis cpaYAxis;
+    // CPA theo kỳ của cả khóa, chỉ hiện khi dữ liệu có từ hai sinh viên
+    @FXML private VBox cohortPane;
+    @FXML private CanvasChart cohortChart;
     private final Set<String> selectedSemesters = new LinkedHashSet<>();
-
-    private void saveSelectedSemesters() {
-        Preferences prefs = Preferences.userNodeForPackage(DashboardController.class);
-        prefs.put("selectedSemesters", String.join(",", selectedSemesters));
-    }
-
-    private void loadSelectedSemesters() {
-        Preferences prefs = Preferences.userNodeForPackage(DashboardController.class);
-        String saved = prefs.get("selectedSemesters", "");
-        if (!saved.isEmpty()) {
-            selectedSemesters.clear();
-            selectedSemesters.addAll(List.of(saved.split(",")));
-        }
-    }
-
-    // Course đã được group theo kỳ
-    private Map<String, List<Course>> groupedCourses;
-    private void initData() {
-        List<Course> courses = CourseService.getAllCourses();
-        groupedCourses = GpaService.groupBySemester(courses);
-    }
-
-    private void initSemesterMenu() {
-        semesterMenuButton.getItems().clear();
-        for (String semester : groupedCourses.keySet()) {
-            CheckBox checkBox = new CheckBox(semester);
-            checkBox.setSelected(selectedSemesters.contains(semester));
-            checkBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
-                if (newVal) selectedSemesters.add(semester);
-                else selectedSemesters.remove(semester);
-                saveSelectedSemesters();   // ⭐ dòng mấu chốt
-                updateGpaChart();
-                updateCpaChart();
-            });
-            CustomMenuItem menuItem = new CustomMenuItem(checkBox);
-            menuItem.setHideOnClick(false); // ✅ HỢP LỆ 100%
-            semesterMenuButton.getItems().add(menuItem);
-        }
+    private SemesterSelection semesterSelection;
+    private ChartSeriesModel gpaSeries;
+    private ChartSeriesModel cpaSeries;
+
+    private final BackgroundCompute compute = new BackgroundCompute("dashboard");
+    // CPA theo kỳ từng sinh viên, mọi kỳ (kéo / phóng trên biểu đồ để xem)
+    private final CohortSeries cohort = new CohortSeries("dashboard-cohort", CohortService.StudentSeries::cpaBySemester, data -> {
+        cohortPane.setVisible(data != null);
+        cohortChart.setData(data);
+    });
+    // Các kỳ đang có trong menu
+    private Set<String> knownSemesters;
+
+    // Kết quả tính ở luồng nền: mọi kỳ hiện có, GPA / CPA của các kỳ được chọn
+    private record Charts(Set<String> semesters, Map<String, Double> gpa, Map<String, Double> cpa) {
     }
 
-    private void addTooltips(XYChart.Series<String, Number> series) {
-        for (XYChart.Data<String, Number> data : series.getData()) {
-            if (data.getNode() != null) {
-                Tooltip tooltip = new Tooltip(
-                        String.format("%.2f", data.getYValue().doubleValue())
-                );
-                Tooltip.install(data.getNode(), tooltip);
+    /**
+     * Tính lại hai chart ở luồng nền theo lựa chọn hiện tại rồi vẽ, dựng lại menu nếu danh
+     * sách kỳ đổi. Kết quả bị bỏ nếu người dùng đã đổi lựa chọn trong lúc tính.
+     */
+    private void refresh() {
+        Set<String> selected = new LinkedHashSet<>(selectedSemesters);
+        long generation = semesterSelection.generation();
+        compute.submit(() -> new Charts(
+                Set.copyOf(GpaCache.grouped().keySet()),
+                Collections.unmodifiableMap(GpaCache.gpaBySemester(selected)),
+                Collections.unmodifiableMap(GpaCache.cpaBySemester(selected))
+        ), charts -> {
+            if (!charts.semesters().equals(knownSemesters)) {
+                knownSemesters = charts.semesters();
+                semesterSelection.rebuild(new TreeSet<>(knownSemesters));
             }
-        }
-    }
-
-    private void updateGpaChart() {
-        List<String> semesters = new ArrayList<>(selectedSemesters);
-        gpaXAxis.setCategories(FXCollections.observableArrayList(semesters));
-        cpaXAxis.setCategories(FXCollections.observableArrayList(semesters));
-        gpaChart.getData().clear();
-        if (selectedSemesters.isEmpty()) return;
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("GPA");
-        var gpaMap = GpaService.calcGpaBySemester(groupedCourses, selectedSemesters);
-        gpaMap.forEach((k, v) -> series.getData().add(createPoint(k, v)));
-        gpaChart.getData().add(series);
-        Platform.runLater(() -> { gpaChart.applyCss(); gpaChart.layout(); addTooltips(series); });
-    }
-
-    private void updateCpaChart() {
-        List<String> semesters = new ArrayList<>(selectedSemesters);
-        gpaXAxis.setCategories(FXCollections.observableArrayList(semesters));
-        cpaXAxis.setCategories(FXCollections.observableArrayList(semesters));
-        cpaChart.getData().clear();
-        if (selectedSemesters.isEmpty()) return;
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("CPA");
-        var cpaMap = GpaService.calcCpaBySemester(groupedCourses, selectedSemesters);
-        cpaMap.forEach((k, v) -> series.getData().add(createPoint(k, v)));
-        cpaChart.getData().add(series);
-        Platform.runLater(() -> { cpaChart.applyCss(); cpaChart.layout(); addTooltips(series); });
+            if (!semesterSelection.isCurrent(generation)) return;
+            List<String> semesters = new ArrayList<>(selected);
+            ChartSeriesModel.setCategories(gpaXAxis, semesters);
+            ChartSeriesModel.setCategories(cpaXAxis, semesters);
+            // Series chỉ vẽ lại các điểm có giá trị đổi
+            gpaSeries.setAll(charts.gpa());
+            cpaSeries.setAll(charts.cpa());
+        });
     }
 
     @FXML public void initialize() {
-        setupYAxis(gpaYAxis);
-        setupYAxis(cpaYAxis);
-        cpaYAxis.setLowerBound(3.2);
+        // Bật/tắt kỳ liên tiếp được gom lại, chỉ vẽ lại một lần theo lựa chọn cuối
+        semesterSelection = new SemesterSelection(semesterMenuButton, DashboardController.class, selectedSemesters, this::refresh);
+        cohortPane.managedProperty().bind(cohortPane.visibleProperty());
         gpaChart.setAnimated(false);
         cpaChart.setAnimated(false);
+        gpaSeries = new ChartSeriesModel(gpaChart, "GPA", DashboardController::formatPoints, true);
+        cpaSeries = new ChartSeriesModel(cpaChart, "CPA", DashboardController::formatPoints, true);
         reloadData();
     }
 
     /**
      * Được gọi khi app cần reload dữ liệu (từ nút Reload).
      * - Đọc lại data từ CourseService
-     * - Rebuild groupedCourses, menu kỳ
-     * - Vẽ lại chart GPA / CPA
+     * - Rebuild menu kỳ
+     * - Vẽ lại chart GPA / CPA (tính ở luồng nền)
      */
+    @Override
     public void reloadData() {
-        initData();
-        loadSelectedSemesters();
-        initSemesterMenu();
-        updateGpaChart();
-        updateCpaChart();
+        // Trục Y theo điểm cao nhất của thang điểm đang dùng (thang 4: 1.2 - 4.4)
+        double max = GradingScale.active().maxPoints();
+        setupYAxis(gpaYAxis, max);
+        setupYAxis(cpaYAxis, max);
+        cpaYAxis.setLowerBound(max * 0.8);
+        cohortChart.setYRange(0, max);
+        semesterSelection.load();
+        knownSemesters = null;
+        refresh();
+        cohort.reload();
     }
 
+    /**
+     * Cập nhật theo phần dữ liệu thay đổi (sửa trong app hoặc file bị sửa bên ngoài)
+     * thay vì đọc lại toàn bộ.
+     */
+    @Override
+    public void onCoursesChanged(CourseDelta delta) {
+        refresh();
+        cohort.update(delta);
+    }
 
-
-    private void setupYAxis(NumberAxis axis) {
+    private void setupYAxis(NumberAxis axis, double max) {
         axis.setAutoRanging(false);
-        axis.setLowerBound(1.2);
-        axis.setUpperBound(4.4);
-        axis.setTickUnit(0.4);
+        axis.setLowerBound(max * 0.3);
+        axis.setUpperBound(max * 1.1);
+        axis.setTickUnit(max * 0.1);
         axis.setMinorTickCount(0);
     }
 
-    private XYChart.Data<String, Number> createPoint(String x, double y) {
-        // Tạo hình tròn nhỏ cho điểm
-        Circle circle = new Circle(5);
-        circle.setStyle("""
-            -fx-fill: white;
-            -fx-stroke: #ff6f00;
-            -fx-stroke-width: 2;
-        """);
-        // Tạo label hiển thị giá trị (không có background)
-        Label label = new Label(String.format("%.2f", y));
-        label.setStyle("""
-            -fx-font-size: 10px;
-            -fx-font-weight: bold;
-            -fx-text-fill: #ff6f00;
-        """);
-        // Đặt label phía trên điểm
-        label.setTranslateY(-15);
-        // Stack chứa cả circle và label
-        StackPane stack = new StackPane(circle, label);
-        // ẨN HÌNH CHỮ NHẬT MẶC ĐỊNH
-        stack.setStyle("""
-            -fx-background-color: transparent;
-            -fx-padding: 0;
-        """);
-        XYChart.Data<String, Number> data = new XYChart.Data<>(x, y);
-        data.setNode(stack);
-        return data;
+    private static String formatPoints(Number value) {
+        return String.format("%.2f", value.doubleValue());
     }
 
 }
-
@@ -1,29 +1,19 @@
 package calcpa.controller;
 
-import calcpa.model.Course;
-import calcpa.service.CourseService;
-import calcpa.service.GpaService;
-import javafx.application.Platform;
-import javafx.collections.FXCollections;
+import calcpa.service.CohortService;
+import calcpa.service.CourseDelta;
+import calcpa.service.GpaCache;
 import javafx.fxml.FXML;
-import javafx.geometry.Pos;
 import javafx.scene.chart.CategoryAxis;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.StackedBarChart;
-import javafx.scene.chart.XYChart;
-import javafx.scene.control.CheckBox;
-import javafx.scene.control.CustomMenuItem;
-import javafx.scene.control.Label;
 import javafx.scene.control.MenuButton;
-import javafx.scene.control.Tooltip;
-import javafx.scene.layout.StackPane;
-import javafx.scene.shape.Circle;
+import javafx.scene.layout.VBox;
 
 import java.util.*;
-import java.util.prefs.Preferences;
 
-public class DashboardCreditController {
+public class DashboardCreditController implements Page {
 
     @FXML private MenuButton semesterMenuButton;
     @FXML private StackedBarChart<String, Number> creditsChart;
@@ -35,274 +25,126 @@ public class DashboardCreditController {
     @FXML private LineChart<String, Number> creditsPerSemesterChart;
     @FXML private CategoryAxis creditsPerSemesterXAxis;
     @FXML private NumberAxis creditsPerSemesterYAxis;
+    // Tín chỉ tích lũy theo kỳ của cả khóa, chỉ hiện khi dữ liệu có từ hai sinh viên
+    @FXML private VBox cohortPane;
+    @FXML private CanvasChart cohortChart;
     
     private final Set<String> selectedSemesters = new LinkedHashSet<>();
-    private Map<String, List<Course>> groupedCourses;
-
-    private void saveSelectedSemesters() {
-        Preferences prefs = Preferences.userNodeForPackage(DashboardCreditController.class);
-        prefs.put("selectedSemesters", String.join(",", selectedSemesters));
-    }
-
-    private void loadSelectedSemesters() {
-        Preferences prefs = Preferences.userNodeForPackage(DashboardCreditController.class);
-        String saved = prefs.get("selectedSemesters", "");
-        if (!saved.isEmpty()) {
-            selectedSemesters.clear();
-            selectedSemesters.addAll(List.of(saved.split(",")));
-        }
-    }
-
-    private void initData() {
-        List<Course> courses = CourseService.getAllCourses();
-        groupedCourses = GpaService.groupBySemester(courses);
-    }
-
-    private void initSemesterMenu() {
-        semesterMenuButton.getItems().clear();
-        for (String semester : groupedCourses.keySet()) {
-            CheckBox checkBox = new CheckBox(semester);
-            checkBox.setSelected(selectedSemesters.contains(semester));
-            checkBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
-                if (newVal) selectedSemesters.add(semester);
-                else selectedSemesters.remove(semester);
-                saveSelectedSemesters();
-                updateCreditsCharts();
-                updateCumulativeCreditsChart();
-                updateCreditsPerSemesterChart();
-            });
-            CustomMenuItem menuItem = new CustomMenuItem(checkBox);
-            menuItem.setHideOnClick(false);
-            semesterMenuButton.getItems().add(menuItem);
-        }
+    private SemesterSelection semesterSelection;
+    private final BackgroundCompute compute = new BackgroundCompute("dashboard-credit");
+    // Tín chỉ tích lũy theo kỳ từng sinh viên, mọi kỳ (kéo / phóng trên biểu đồ để xem)
+    private final CohortSeries cohort = new CohortSeries("dashboard-credit-cohort", CohortService.StudentSeries::creditsBySemester, data -> {
+        cohortPane.setVisible(data != null);
+        cohortChart.setData(data);
+    });
+    // Các kỳ đang có trong menu
+    private Set<String> knownSemesters;
+
+    private ChartSeriesModel newSeries;
+    private ChartSeriesModel repeatSeries;
+    private ChartSeriesModel cumulativeSeries;
+    private ChartSeriesModel perSemesterSeries;
+
+    // Kết quả tính ở luồng nền cho các kỳ được chọn (đã sắp xếp)
+    private record Credits(Set<String> semesters, List<String> selected,
+                           Map<String, Integer> newCredits, Map<String, Integer> repeatCredits,
+                           Map<String, Integer> cumulative, Map<String, Integer> perSemester) {
     }
 
     @FXML
     public void initialize() {
+        // Bật/tắt kỳ liên tiếp được gom lại, chỉ vẽ lại một lần theo lựa chọn cuối
+        semesterSelection = new SemesterSelection(semesterMenuButton, DashboardCreditController.class, selectedSemesters, this::refresh);
+        cohortPane.managedProperty().bind(cohortPane.visibleProperty());
+        cohortChart.setAutoRange(true);
+        cohortChart.setValueFormat("%.0f");
         setupCreditsYAxis();
         setupCumulativeCreditsYAxis();
         setupCreditsPerSemesterYAxis();
         creditsChart.setAnimated(false);
         creditsCumChart.setAnimated(false);
         creditsPerSemesterChart.setAnimated(false);
-        
+        newSeries = new ChartSeriesModel(creditsChart, "Tín chỉ tích lũy thêm", DashboardCreditController::formatCredits, false);
+        repeatSeries = new ChartSeriesModel(creditsChart, "Tín chỉ học cải thiện", DashboardCreditController::formatCredits, false);
+        cumulativeSeries = new ChartSeriesModel(creditsCumChart, "Tín chỉ tích lũy", DashboardCreditController::formatCredits, true);
+        perSemesterSeries = new ChartSeriesModel(creditsPerSemesterChart, "Số tín chỉ học trong kỳ", DashboardCreditController::formatCredits, true);
+
         reloadData();
     }
 
     /**
      * Được gọi khi app cần reload dữ liệu (từ nút Reload).
      */
+    @Override
     public void reloadData() {
-        initData();
-        loadSelectedSemesters();
-        initSemesterMenu();
-        updateCreditsCharts();
-        updateCumulativeCreditsChart();
-        updateCreditsPerSemesterChart();
+        semesterSelection.load();
+        knownSemesters = null;
+        refresh();
+        cohort.reload();
     }
 
     /**
-     * Cập nhật biểu đồ số tín chỉ học trong kỳ
+     * Cập nhật theo phần dữ liệu thay đổi (sửa trong app hoặc file bị sửa bên ngoài)
+     * thay vì đọc lại toàn bộ.
      */
-    private void updateCreditsCharts() {
-        creditsChart.getData().clear();
-        if (groupedCourses == null || selectedSemesters.isEmpty()) return;
-
-        List<String> semesters = new ArrayList<>(selectedSemesters);
-        Collections.sort(semesters);
-        creditsXAxis.setCategories(FXCollections.observableArrayList(semesters));
-
-        XYChart.Series<String, Number> seriesNew = new XYChart.Series<>();
-        seriesNew.setName("Tín chỉ tích lũy thêm");
-
-        XYChart.Series<String, Number> seriesRepeat = new XYChart.Series<>();
-        seriesRepeat.setName("Tín chỉ học cải thiện");
-
-        Set<String> seenCodes = new HashSet<>();
-        Map<String, int[]> creditsData = new LinkedHashMap<>(); // sem -> [newCredits, repeatCredits]
-
-        for (String sem : semesters) {
-            List<Course> list = groupedCourses.getOrDefault(sem, List.of());
-
-            int newCredits = 0;
-            int repeatCredits = 0;
-
-            for (Course c : list) {
-                if (c.getCode() == null) continue;
-                if (seenCodes.contains(c.getCode())) {
-                    repeatCredits += c.getCredits();
-                } else {
-                    newCredits += c.getCredits();
-                    seenCodes.add(c.getCode());
-                }
-            }
-
-            creditsData.put(sem, new int[]{newCredits, repeatCredits});
-            seriesNew.getData().add(new XYChart.Data<>(sem, newCredits));
-            seriesRepeat.getData().add(new XYChart.Data<>(sem, repeatCredits));
-        }
-
-        // add theo thứ tự: tích lũy thêm (dưới) -> cải thiện (trên)
-        creditsChart.getData().addAll(seriesNew, seriesRepeat);
-
-        Platform.runLater(() -> {
-            creditsChart.applyCss();
-            creditsChart.layout();
-
-            setBarSeriesColor(seriesNew, "#43a047");     // xanh lá
-            setBarSeriesColor(seriesRepeat, "#fbc02d");  // vàng
-
-            addBarTooltips(seriesNew);
-            addBarTooltips(seriesRepeat);
-        });
+    @Override
+    public void onCoursesChanged(CourseDelta delta) {
+        refresh();
+        cohort.update(delta);
     }
 
     /**
-     * Cập nhật biểu đồ tín chỉ tích lũy đến kỳ
+     * Tính lại ba biểu đồ ở luồng nền theo lựa chọn hiện tại rồi vẽ, dựng lại menu nếu danh
+     * sách kỳ đổi. Kết quả bị bỏ nếu người dùng đã đổi lựa chọn trong lúc tính.
      */
-    private void updateCumulativeCreditsChart() {
-        creditsCumChart.getData().clear();
-        if (groupedCourses == null || selectedSemesters.isEmpty()) return;
-
-        List<String> semesters = new ArrayList<>(selectedSemesters);
-        Collections.sort(semesters);
-        creditsCumXAxis.setCategories(FXCollections.observableArrayList(semesters));
-
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("Tín chỉ tích lũy");
-
-        Map<String, Integer> cumulativeBySemester =
-                GpaService.calcCumulativeCreditsBySemester(groupedCourses, selectedSemesters);
-        for (String sem : semesters) {
-            int credits = cumulativeBySemester.getOrDefault(sem, 0);
-            series.getData().add(createPoint(sem, credits));
-        }
-
-        creditsCumChart.getData().add(series);
-
-        Platform.runLater(() -> {
-            creditsCumChart.applyCss();
-            creditsCumChart.layout();
-            addTooltips(series);
-        });
-    }
-
-    private void setSeriesColor(XYChart.Series<String, Number> series, String color) {
-        if (series.getNode() != null) {
-            series.getNode().lookup(".chart-series-line")
-                    .setStyle("-fx-stroke: " + color + ";");
-        }
-        for (XYChart.Data<String, Number> d : series.getData()) {
-            if (d.getNode() != null) {
-                d.getNode().lookup("Circle")
-                        .setStyle("-fx-stroke: " + color + "; -fx-fill: white;");
-                d.getNode().lookup("Label")
-                        .setStyle("-fx-text-fill: " + color + "; -fx-font-weight: bold;");
-            }
-        }
-    }
-
-    private void setBarSeriesColor(XYChart.Series<String, Number> series, String color) {
-        for (XYChart.Data<String, Number> d : series.getData()) {
-            if (d.getNode() != null) {
-                d.getNode().setStyle("-fx-bar-fill: " + color + ";");
-            }
-        }
-    }
-
-    private void addBarTooltips(XYChart.Series<String, Number> series) {
-        for (XYChart.Data<String, Number> data : series.getData()) {
-            if (data.getNode() != null) {
-                Tooltip tooltip = new Tooltip(
-                        String.format("%.0f", data.getYValue().doubleValue())
-                );
-                Tooltip.install(data.getNode(), tooltip);
+    private void refresh() {
+        Set<String> selected = new LinkedHashSet<>(selectedSemesters);
+        long generation = semesterSelection.generation();
+        compute.submit(() -> compute(selected), credits -> {
+            if (!credits.semesters().equals(knownSemesters)) {
+                knownSemesters = credits.semesters();
+                semesterSelection.rebuild(new TreeSet<>(knownSemesters));
             }
-        }
+            if (!semesterSelection.isCurrent(generation)) return;
+            ChartSeriesModel.setCategories(creditsXAxis, credits.selected());
+            ChartSeriesModel.setCategories(creditsCumXAxis, credits.selected());
+            ChartSeriesModel.setCategories(creditsPerSemesterXAxis, credits.selected());
+            // Thứ tự series: tích lũy thêm (dưới) -> cải thiện (trên)
+            newSeries.setAll(credits.newCredits());
+            repeatSeries.setAll(credits.repeatCredits());
+            cumulativeSeries.setAll(credits.cumulative());
+            perSemesterSeries.setAll(credits.perSemester());
+        });
     }
 
-    /**
-     * Cập nhật biểu đồ đường số tín chỉ học trong kỳ
-     */
-    private void updateCreditsPerSemesterChart() {
-        creditsPerSemesterChart.getData().clear();
-        if (groupedCourses == null || selectedSemesters.isEmpty()) return;
-
-        List<String> semesters = new ArrayList<>(selectedSemesters);
+    // Chạy ở luồng nền
+    private static Credits compute(Set<String> selected) {
+        List<String> semesters = new ArrayList<>(selected);
         Collections.sort(semesters);
-        creditsPerSemesterXAxis.setCategories(FXCollections.observableArrayList(semesters));
-
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("Số tín chỉ học trong kỳ");
-
-        Set<String> seenCodes = new HashSet<>();
 
+        Map<String, Integer> newCredits = new LinkedHashMap<>();
+        Map<String, Integer> repeatCredits = new LinkedHashMap<>();
+        Map<String, Integer> perSemester = new LinkedHashMap<>();
         for (String sem : semesters) {
-            List<Course> list = groupedCourses.getOrDefault(sem, List.of());
-            int totalCredits = 0;
-
-            for (Course c : list) {
-                if (c.getCode() == null) continue;
-                totalCredits += c.getCredits();
-                if (!seenCodes.contains(c.getCode())) {
-                    seenCodes.add(c.getCode());
-                }
-            }
-
-            series.getData().add(createPoint(sem, totalCredits));
+            // [tín chỉ học mới, tín chỉ học lại] so với các kỳ được chọn trước đó
+            int[] split = GpaCache.newAndRepeatCredits(sem, selected);
+            newCredits.put(sem, split[0]);
+            repeatCredits.put(sem, split[1]);
+            // Số tín chỉ học trong kỳ
+            perSemester.put(sem, GpaCache.semesterCredits(sem));
         }
+        // Tín chỉ tích lũy đến kỳ
+        Map<String, Integer> cumulativeBySemester = GpaCache.cumulativeCreditsBySemester(selected);
+        Map<String, Integer> cumulative = new LinkedHashMap<>();
+        for (String sem : semesters) cumulative.put(sem, cumulativeBySemester.getOrDefault(sem, 0));
 
-        creditsPerSemesterChart.getData().add(series);
-
-        Platform.runLater(() -> {
-            creditsPerSemesterChart.applyCss();
-            creditsPerSemesterChart.layout();
-            // Chỉ style cho line, không động vào các node tùy chỉnh
-            if (series.getNode() != null) {
-                series.getNode().lookup(".chart-series-line")
-                        .setStyle("-fx-stroke: #ff6f00; -fx-stroke-width: 2px;");
-            }
-            addTooltips(series);
-        });
-    }
-
-    private void addTooltips(XYChart.Series<String, Number> series) {
-        for (XYChart.Data<String, Number> data : series.getData()) {
-            if (data.getNode() != null) {
-                Tooltip tooltip = new Tooltip(
-                        String.format("%.0f", data.getYValue().doubleValue())
-                );
-                Tooltip.install(data.getNode(), tooltip);
-            }
-        }
+        return new Credits(Set.copyOf(GpaCache.grouped().keySet()), List.copyOf(semesters),
+                Collections.unmodifiableMap(newCredits), Collections.unmodifiableMap(repeatCredits),
+                Collections.unmodifiableMap(cumulative), Collections.unmodifiableMap(perSemester));
     }
 
-    private XYChart.Data<String, Number> createPoint(String x, double y) {
-        // Tạo hình tròn nhỏ cho điểm
-        Circle circle = new Circle(5);
-        circle.setStyle("""
-            -fx-fill: white;
-            -fx-stroke: #ff6f00;
-            -fx-stroke-width: 2;
-        """);
-        // Tạo label hiển thị giá trị
-        Label label = new Label(String.format("%.0f", y));
-        label.setStyle("""
-            -fx-font-size: 10px;
-            -fx-font-weight: bold;
-            -fx-text-fill: #ff6f00;
-        """);
-        // Đặt label phía trên điểm
-        label.setTranslateY(-15);
-        // Stack chứa cả circle và label
-        StackPane stack = new StackPane(circle, label);
-        stack.setStyle("""
-            -fx-background-color: transparent;
-            -fx-padding: 0;
-        """);
-        XYChart.Data<String, Number> data = new XYChart.Data<>(x, y);
-        data.setNode(stack);
-        return data;
+    private static String formatCredits(Number value) {
+        return String.valueOf(value.intValue());
     }
 
     private void setupCreditsYAxis() {
@@ -1,9 +1,30 @@
 package calcpa.controller;
 
+import calcpa.ExcelReader;
+import calcpa.ParseReport;
+import calcpa.model.Course;
+import calcpa.service.CourseDelta;
 import calcpa.service.CourseService;
+import calcpa.service.DataFileWatcher;
+import calcpa.service.ReportExportService;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MainController {
 
@@ -18,32 +39,80 @@ public class MainController {
         return instance;
     }
 
-    // Root nodes của từng trang
-    @FXML private Node pageDashboard;
-    @FXML private Node pageDashboardCredit;
-    @FXML private Node pageSemester;
-    @FXML private Node pageSubject;
-    @FXML private Node pageSetting;
+    // Các trang: chỉ được load FXML khi mở lần đầu (xem PageSlot)
+    private final PageSlot dashboard = new PageSlot("dashboard.fxml");
+    private final PageSlot dashboardCredit = new PageSlot("dashboard-credit.fxml");
+    private final PageSlot semester = new PageSlot("semester.fxml");
+    private final PageSlot subject = new PageSlot("subject.fxml");
+    private final PageSlot setting = new PageSlot("setting.fxml");
+    private final List<PageSlot> pages = List.of(dashboard, dashboardCredit, semester, subject, setting);
+    private PageSlot current;
+
+    @FXML private StackPane pageHost;
+
+    // Lớp phủ "Đang tải dữ liệu"
+    @FXML private VBox loadingPane;
+    @FXML private Label loadingLabel;
+    @FXML private ProgressBar loadingProgress;
+    // Vòng quay khi còn phần việc tính nền của các trang (BackgroundCompute)
+    @FXML private ProgressIndicator busyIndicator;
+
+    private Task<List<Course>> loadTask;
+    // Báo cáo lỗi đã hiện cho người dùng, tránh hiện lại khi reload mà file không đổi
+    private ParseReport shownReport = ParseReport.EMPTY;
+
+    /**
+     * Một trang của app. Root và controller chỉ có sau lần mở đầu tiên; trang đang ẩn khi dữ
+     * liệu đổi thì chỉ bị đánh dấu dirty và đọc lại khi được mở lại.
+     */
+    private static final class PageSlot {
+        final String fxml;
+        Node root;
+        Object controller;
+        boolean dirty;
+
+        PageSlot(String fxml) {
+            this.fxml = fxml;
+        }
 
-    // Controller của các trang (theo pattern fx:include + fx:id)
-    @FXML private DashboardController pageDashboardController;
-    @FXML private DashboardCreditController pageDashboardCreditController;
-    @FXML private SemesterController pageSemesterController;
-    @FXML private SubjectController pageSubjectController;
-    @FXML private SettingController pageSettingController;
+        Page page() {
+            return controller instanceof Page page ? page : null;
+        }
+    }
 
     @FXML
     public void initialize() {
-        hideAllPages();
-        showPage(pageDashboard);
+        busyIndicator.visibleProperty().bind(BackgroundCompute.busyProperty());
+        open(dashboard);
+        CourseService.addChangeListener(this::onCoursesChanged);
+    }
+
+    /**
+     * Mở một trang: load FXML nếu chưa có (initialize của trang tự đọc dữ liệu hiện tại),
+     * đọc lại nếu trang bị đánh dấu dirty trong lúc ẩn, rồi ẩn trang đang mở.
+     */
+    private void open(PageSlot slot) {
+        if (slot.root == null) {
+            load(slot);
+        } else if (slot.dirty && slot.page() != null) {
+            slot.page().reloadData();
+        }
+        slot.dirty = false;
+        if (current != null && current != slot) hide(current.root);
+        showPage(slot.root);
+        current = slot;
     }
 
-    private void hideAllPages() {
-        hide(pageDashboard);
-        hide(pageDashboardCredit);
-        hide(pageSemester);
-        hide(pageSubject);
-        hide(pageSetting);
+    private void load(PageSlot slot) {
+        FXMLLoader loader = new FXMLLoader(MainController.class.getResource("/calcpa/" + slot.fxml));
+        try {
+            slot.root = loader.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không load được trang " + slot.fxml, e);
+        }
+        slot.controller = loader.getController();
+        // Nằm dưới lớp phủ đang tải
+        pageHost.getChildren().add(pageHost.getChildren().indexOf(loadingPane), slot.root);
     }
 
     private void hide(Node page) {
@@ -60,62 +129,178 @@ public class MainController {
 
     @FXML
     private void showDashboard() {
-        hideAllPages();
-        showPage(pageDashboard);
+        open(dashboard);
     }
 
     @FXML
     private void showDashboardCredit() {
-        hideAllPages();
-        showPage(pageDashboardCredit);
+        open(dashboardCredit);
     }
 
     @FXML
     private void showSemester() {
-        hideAllPages();
-        showPage(pageSemester);
+        open(semester);
     }
 
     @FXML
     private void showSubject() {
-        hideAllPages();
-        showPage(pageSubject);
+        open(subject);
     }
 
     @FXML
     private void showSetting() {
-        hideAllPages();
-        showPage(pageSetting);
+        open(setting);
+    }
+
+    /**
+     * Dữ liệu thay đổi (sửa trong app hoặc file bị sửa bên ngoài): chỉ trang đang mở nhận
+     * phần thay đổi, các trang đã load khác đọc lại khi được mở.
+     */
+    private void onCoursesChanged(CourseDelta delta) {
+        for (PageSlot slot : pages) {
+            if (slot.page() == null) continue;
+            if (slot == current) slot.page().onCoursesChanged(delta);
+            else slot.dirty = true;
+        }
     }
 
     /**
      * Nút Reload dùng để:
-     * - Đọc lại data từ file CSV
+     * - Đọc lại data từ file CSV (ở luồng nền, xem loadDataAsync)
      * - Báo cho các trang con cập nhật lại UI
      */
     @FXML
     public void reloadApp() {
-        // Load lại data gốc
-        CourseService.loadData();
+        loadDataAsync();
+    }
 
-        // Báo từng trang tự reload UI nếu có controller
-        if (pageDashboardController != null) {
-            pageDashboardController.reloadData();
-        }
-        if (pageDashboardCreditController != null) {
-            pageDashboardCreditController.reloadData();
-        }
-        if (pageSemesterController != null) {
-            pageSemesterController.reloadData();
-        }
-        if (pageSubjectController != null) {
-            pageSubjectController.reloadData();
+    /**
+     * Đọc dữ liệu trên một virtual thread, hiện lớp phủ kèm tiến độ trong lúc chờ.
+     * Cửa sổ vẫn phản hồi; khi đọc xong dữ liệu được gán trên luồng UI và các trang
+     * mới được cập nhật. Nếu trong lúc đọc dữ liệu bị sửa trong app thì đọc lại.
+     */
+    public void loadDataAsync() {
+        // Không ngắt luồng đang đọc (cancel(false)) để không làm đóng FileChannel của journal
+        if (loadTask != null && loadTask.isRunning()) loadTask.cancel(false);
+
+        long startVersion = CourseService.getVersion();
+        Task<List<Course>> task = new Task<>() {
+            @Override
+            protected List<Course> call() throws Exception {
+                return CourseService.readData(progress -> updateProgress(progress, 1.0));
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (CourseService.getVersion() != startVersion) {
+                loadDataAsync();
+                return;
+            }
+            CourseService.setData(task.getValue());
+            hideLoading();
+            refreshPages();
+            showParseErrors();
+            // Theo dõi data.csv để cập nhật khi file bị sửa bên ngoài app
+            DataFileWatcher.start(Platform::runLater);
+        });
+        task.setOnFailed(e -> {
+            task.getException().printStackTrace();
+            hideLoading();
+            showMessage(Alert.AlertType.ERROR, "Tải dữ liệu", "Không đọc được dữ liệu: " + task.getException().getMessage());
+        });
+
+        loadTask = task;
+        loadingProgress.progressProperty().bind(task.progressProperty());
+        loadingLabel.setText("Đang tải dữ liệu...");
+        loadingPane.setVisible(true);
+        Thread.ofVirtual().name("data-loader").start(task);
+    }
+
+    /**
+     * Xuất GPA, CPA và tín chỉ tích lũy theo kỳ ra file người dùng chọn (CSV hoặc xlsx).
+     * Việc tính và ghi chạy trên virtual thread, lớp phủ hiện tiến độ trong lúc chờ.
+     */
+    @FXML
+    public void exportReport() {
+        if (loadingPane.isVisible()) return;
+
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Xuất báo cáo");
+        chooser.setInitialFileName("bao-cao-gpa.xlsx");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Excel (*.xlsx)", "*.xlsx"),
+                new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv"));
+        File file = chooser.showSaveDialog(loadingPane.getScene().getWindow());
+        if (file == null) return;
+
+        // Chụp danh sách trên luồng UI, luồng nền không đọc danh sách đang bị sửa
+        List<Course> snapshot = new ArrayList<>(CourseService.getAllCourses());
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                ReportExportService.export(snapshot, file.toPath(), progress -> updateProgress(progress, 1.0));
+                return null;
+            }
+        };
+        task.setOnSucceeded(e -> {
+            hideLoading();
+            showMessage(Alert.AlertType.INFORMATION, "Xuất báo cáo", "Đã xuất báo cáo ra " + file.getName());
+        });
+        task.setOnFailed(e -> {
+            task.getException().printStackTrace();
+            hideLoading();
+            showMessage(Alert.AlertType.WARNING, "Xuất báo cáo", "Không xuất được báo cáo: " + task.getException().getMessage());
+        });
+
+        loadingProgress.progressProperty().bind(task.progressProperty());
+        loadingLabel.setText("Đang xuất báo cáo...");
+        loadingPane.setVisible(true);
+        Thread.ofVirtual().name("report-export").start(task);
+    }
+
+    private void showMessage(Alert.AlertType type, String title, String message) {
+        Alert alert = new Alert(type);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.show();
+    }
+
+    /**
+     * Nếu lần đọc file vừa rồi có dòng lỗi thì báo số dòng bị bỏ qua và vài lỗi đầu tiên.
+     */
+    private void showParseErrors() {
+        ParseReport report = ExcelReader.getLastReport();
+        if (report == shownReport || !report.hasErrors()) return;
+        shownReport = report;
+
+        StringBuilder message = new StringBuilder("Đã bỏ qua " + report.errorCount() + " dòng không hợp lệ:\n");
+        report.errors().stream().limit(10).forEach(entry -> message.append("\n").append(entry));
+        if (report.errorCount() > 10) message.append("\n...");
+
+        showMessage(Alert.AlertType.WARNING, "Dữ liệu không hợp lệ", message.toString());
+    }
+
+    private void hideLoading() {
+        loadingProgress.progressProperty().unbind();
+        loadingPane.setVisible(false);
+    }
+
+    /**
+     * Thang điểm vừa đổi (trang Setting): dữ liệu không đổi, chỉ cần tính và vẽ lại.
+     */
+    public void onGradingScaleChanged() {
+        refreshPages();
+    }
+
+    /**
+     * Báo cho các trang đọc lại dữ liệu từ CourseService: trang đang mở đọc lại ngay,
+     * các trang đã load khác khi được mở.
+     */
+    private void refreshPages() {
+        for (PageSlot slot : pages) {
+            if (slot.page() == null) continue;
+            if (slot == current) slot.page().reloadData();
+            else slot.dirty = true;
         }
-        // Setting hiện chưa dùng data nên tạm thời không cần làm gì
-//        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-//        alert.setTitle("Thông báo");
-//        alert.setHeaderText(null);
-//        alert.setContentText("Đã reload");
-//        alert.showAndWait();
     }
 }
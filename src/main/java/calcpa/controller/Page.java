@@ -0,0 +1,19 @@
+package calcpa.controller;
+
+import calcpa.service.CourseDelta;
+
+/**
+ * Trang hiển thị dữ liệu môn học, do MainController quản lý: chỉ trang đang mở nhận phần
+ * thay đổi, các trang đang ẩn được đọc lại (reloadData) khi mở lần sau.
+ */
+interface Page {
+    /**
+     * Đọc lại toàn bộ dữ liệu từ CourseService và vẽ lại trang.
+     */
+    void reloadData();
+
+    /**
+     * Cập nhật theo phần dữ liệu thay đổi trong lúc trang đang mở.
+     */
+    void onCoursesChanged(CourseDelta delta);
+}
@@ -1,9 +1,13 @@
 package calcpa.controller;
 
 import calcpa.model.Course;
+import calcpa.model.GradeCode;
+import calcpa.service.CourseDelta;
 import calcpa.service.CourseService;
-import calcpa.service.GpaService;
+import calcpa.service.GpaCache;
+import calcpa.service.GradingScale;
 import calcpa.service.CourseOrderService;
+import calcpa.service.TargetCpaSolver;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -18,7 +22,7 @@ import javafx.scene.layout.Pane;
 import java.util.*;
 import java.util.prefs.Preferences;
 
-public class SemesterController {
+public class SemesterController implements Page {
 
     @FXML private ComboBox<String> semesterCombo;
     @FXML private Button btnAddCourse;
@@ -30,10 +34,21 @@ public class SemesterController {
     @FXML private TableColumn<Course, Void> colAction;
     @FXML private Label gpaLabel;
     @FXML private Label cpaLabel;
+    @FXML private TextField targetField;
+    @FXML private Label targetLabel;
     
 
-    private Map<String, List<Course>> groupedCourses = new LinkedHashMap<>();
+    // Map dùng chung từ GpaCache, chỉ đọc
+    private Map<String, List<Course>> groupedCourses = Map.of();
     private final ObservableList<Course> courseList = FXCollections.observableArrayList();
+
+    // Map kỳ -> môn, GPA / CPA và bài toán CPA mục tiêu được tính ở luồng nền
+    private final BackgroundCompute loader = new BackgroundCompute("semester");
+    private final BackgroundCompute labels = new BackgroundCompute("semester-gpa");
+    private final BackgroundCompute target = new BackgroundCompute("semester-target");
+    // Các yêu cầu chưa được áp (yêu cầu mới hủy lần tính trước nên phải gộp lại)
+    private boolean reloadPending;
+    private final List<CourseDelta> pendingDeltas = new ArrayList<>();
     
     // Preferences để lưu trữ kỳ được chọn cuối cùng
     private static final Preferences preferences = Preferences.userNodeForPackage(SemesterController.class);
@@ -44,6 +59,7 @@ public class SemesterController {
         setupTableColumns();
         setupDragAndDrop();
         semesterCombo.setOnAction(e -> onSemesterSelected());
+        targetField.textProperty().addListener((obs, oldVal, newVal) -> updateTarget());
         CourseOrderService.loadOrder(); // Tải thứ tự tùy chỉnh
         reloadData();
     }
@@ -51,8 +67,40 @@ public class SemesterController {
     /**
      * Được gọi khi app cần reload dữ liệu (nút Reload hoặc mở màn Semester).
      */
+    @Override
     public void reloadData() {
-        initData();
+        reloadPending = true;
+        pendingDeltas.clear();
+        loadGrouped();
+    }
+
+    /**
+     * Cập nhật theo phần dữ liệu thay đổi (sửa trong app hoặc file bị sửa bên ngoài)
+     * thay vì đọc lại toàn bộ.
+     */
+    @Override
+    public void onCoursesChanged(CourseDelta delta) {
+        if (!reloadPending) pendingDeltas.add(delta);
+        loadGrouped();
+    }
+
+    // Lấy map kỳ -> môn ở luồng nền rồi áp các yêu cầu đang chờ
+    private void loadGrouped() {
+        loader.submit(GpaCache::grouped, grouped -> {
+            if (reloadPending) {
+                reloadPending = false;
+                pendingDeltas.clear();
+                groupedCourses = grouped;
+                applyReload();
+            } else {
+                List<CourseDelta> deltas = new ArrayList<>(pendingDeltas);
+                pendingDeltas.clear();
+                applyChanges(grouped, deltas);
+            }
+        });
+    }
+
+    private void applyReload() {
         initSemesterCombo();
 
         // Lấy kỳ được chọn lần trước từ Preferences
@@ -81,9 +129,29 @@ public class SemesterController {
         }
     }
 
-    private void initData() {
-        List<Course> courses = CourseService.getAllCourses();
-        groupedCourses = GpaService.groupBySemester(courses);
+    private void applyChanges(Map<String, List<Course>> grouped, List<CourseDelta> deltas) {
+        Set<String> oldSemesters = groupedCourses.keySet();
+        groupedCourses = grouped;
+        if (!oldSemesters.equals(groupedCourses.keySet())) initSemesterCombo();
+        String selected = semesterCombo.getValue();
+        boolean onlyChanged = true;
+        boolean selectedAffected = false;
+        for (CourseDelta delta : deltas) {
+            onlyChanged &= delta.added().isEmpty() && delta.removed().isEmpty();
+            selectedAffected |= delta.affectedSemesters().contains(selected);
+        }
+        if (selected == null || !groupedCourses.containsKey(selected)) {
+            applyReload();
+        } else if (onlyChanged) {
+            // Chỉ sửa điểm / tín chỉ: giữ nguyên danh sách, vẽ lại ô và các nhãn
+            courseTable.refresh();
+            updateGpaCpa();
+        } else if (selectedAffected) {
+            onSemesterSelected();
+        } else {
+            // Kỳ đang xem không đổi nhưng CPA vẫn phụ thuộc các kỳ trước
+            updateGpaCpa();
+        }
     }
 
     private void initSemesterCombo() {
@@ -129,10 +197,8 @@ public class SemesterController {
                             showError("Số tín chỉ phải là số tự nhiên > 0.");
                             return;
                         }
-                        course.setCredits(value);
-                        courseTable.refresh();
-                        // Lưu lại ra CSV và reload toàn app (Dashboard, Semester, ...)
-                        persistAndReload();
+                        CourseService.setCredits(course, value);
+                        persist();
                     } catch (NumberFormatException ex) {
                         showError("Số tín chỉ phải là số nguyên hợp lệ.");
                     }
@@ -161,10 +227,6 @@ public class SemesterController {
 
         // ====== EDIT GRADE (ĐIỂM) BẰNG CHUỘT PHẢI ======
         colGrade.setCellFactory(col -> new TableCell<Course, String>() {
-            private final Set<String> ALLOWED =
-                    new LinkedHashSet<>(Arrays.asList("NA", "X", "R", "A+", "A",
-                            "B+", "B", "C+", "C", "D+", "D", "F"));
-
             {
                 ContextMenu menu = new ContextMenu();
                 MenuItem editItem = new MenuItem("Sửa điểm");
@@ -177,23 +239,23 @@ public class SemesterController {
                 Course course = getCurrentCourse();
                 if (course == null) return;
 
+                // Các giá trị hợp lệ lấy theo thang điểm đang dùng
+                GradingScale scale = GradingScale.active();
+                String allowed = String.join(", ", scale.acceptedTokens());
                 String current = course.getGrade() == null ? "" : course.getGrade();
                 TextInputDialog dialog = new TextInputDialog(current);
                 dialog.setTitle("Sửa điểm");
-                dialog.setHeaderText("Giá trị hợp lệ: " + String.join(", ", ALLOWED));
+                dialog.setHeaderText("Giá trị hợp lệ: " + allowed);
                 dialog.setContentText("Điểm:");
 
                 dialog.showAndWait().ifPresent(text -> {
-                    String value = text.trim().toUpperCase();
-                    if (!ALLOWED.contains(value)) {
-                        showError("Điểm phải thuộc một trong các giá trị: " +
-                                String.join(", ", ALLOWED));
+                    String value = GradeCode.normalize(text);
+                    if (!scale.accepts(GradeCode.find(value))) {
+                        showError("Điểm phải thuộc một trong các giá trị: " + allowed);
                         return;
                     }
-                    course.setGrade(value);
-                    courseTable.refresh();
-                    // Lưu lại ra CSV và reload toàn app
-                    persistAndReload();
+                    CourseService.setGrade(course, value);
+                    persist();
                 });
             }
 
@@ -309,19 +371,11 @@ public class SemesterController {
     }
 
     /**
-     * Ghi lại dữ liệu ra CSV và yêu cầu MainController reload toàn bộ app
-     * (Dashboard, Semester, ...), tránh việc người dùng phải bấm Reload tay.
+     * Lưu thay đổi vào journal (data.csv được compact ở nền). Các trang đã được cập nhật theo
+     * phần thay đổi qua listener của CourseService, không cần reload toàn app.
      */
-    private void persistAndReload() {
-        // Ghi ra data.csv
+    private void persist() {
         CourseService.saveData();
-        // Cập nhật lại GPA/CPA tại màn hiện tại
-        updateGpaCpa();
-        // Gọi reloadApp() ở MainController nếu có
-        MainController main = MainController.getInstance();
-        if (main != null) {
-            main.reloadApp();
-        }
     }
 
     
@@ -357,28 +411,74 @@ public class SemesterController {
     private void updateGpaCpa() {
         String selectedSemester = semesterCombo.getValue();
         if (selectedSemester == null) {
+            labels.cancel();
             gpaLabel.setText("GPA: ");
             cpaLabel.setText("CPA: ");
             return;
         }
 
-        // Tính GPA của kỳ được chọn
-        List<Course> semesterCourses = groupedCourses.getOrDefault(selectedSemester, List.of());
-        double gpa = GpaService.calcGpa(semesterCourses);
-        gpaLabel.setText(String.format("GPA: %.2f", gpa));
-
-        // Tính CPA (tích lũy từ đầu đến kỳ được chọn)
-        Set<String> selectedSemesters = new LinkedHashSet<>();
-        for (String semester : groupedCourses.keySet()) {
-            selectedSemesters.add(semester);
-            if (semester.equals(selectedSemester)) {
-                break;
-            }
+        // GPA của kỳ được chọn và CPA tích lũy từ đầu đến kỳ đó
+        labels.submit(() -> new double[]{GpaCache.gpa(selectedSemester), GpaCache.cpa(selectedSemester)}, points -> {
+            gpaLabel.setText(String.format("GPA: %.2f", points[0]));
+            cpaLabel.setText(String.format("CPA: %.2f", points[1]));
+        });
+        updateTarget();
+    }
+
+    /**
+     * Tính lại điểm tối thiểu cần đạt ở các môn chưa có điểm (mọi kỳ) để CPA cuối đạt mục tiêu.
+     * Chạy mỗi lần sửa ô mục tiêu hoặc dữ liệu đổi; bài toán được giải ở luồng nền trên bản
+     * chụp danh sách môn, lần gõ sau hủy lần giải trước.
+     */
+    private void updateTarget() {
+        String text = targetField.getText() == null ? "" : targetField.getText().trim().replace(',', '.');
+        if (text.isEmpty()) {
+            target.cancel();
+            targetLabel.setTooltip(null);
+            targetLabel.setText("");
+            return;
         }
-        
-        Map<String, Double> cpaMap = GpaService.calcCpaBySemester(groupedCourses, selectedSemesters);
-        double cpa = cpaMap.getOrDefault(selectedSemester, 0.0);
-        cpaLabel.setText(String.format("CPA: %.2f", cpa));
+        double targetCpa;
+        try {
+            targetCpa = Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            target.cancel();
+            targetLabel.setTooltip(null);
+            targetLabel.setText("Không hợp lệ");
+            return;
+        }
+
+        List<Course> courses = CourseService.snapshot().courses();
+        target.submit(() -> TargetCpaSolver.solve(courses, targetCpa), this::showTarget);
+    }
+
+    private void showTarget(TargetCpaSolver.Result result) {
+        targetLabel.setTooltip(null);
+        if (!result.feasible()) {
+            targetLabel.setText(String.format("Không thể đạt (tối đa %.2f)", result.maxCpa()));
+            return;
+        }
+        if (result.assignments().isEmpty()) {
+            targetLabel.setText("Đã đạt");
+            return;
+        }
+
+        // Tóm tắt số môn theo từng mức điểm, chi tiết từng môn để trong tooltip
+        Map<String, Integer> countByGrade = new LinkedHashMap<>();
+        StringBuilder detail = new StringBuilder();
+        List<TargetCpaSolver.Assignment> sorted = new ArrayList<>(result.assignments());
+        sorted.sort(Comparator.comparing((TargetCpaSolver.Assignment a) -> a.course().getSemester())
+                .thenComparing(a -> a.course().getCode()));
+        for (TargetCpaSolver.Assignment a : sorted) {
+            countByGrade.merge(a.grade(), 1, Integer::sum);
+            detail.append(a.course().getSemester()).append("  ").append(a.course().getCode())
+                    .append("  ").append(a.course().getName()).append(": ").append(a.grade()).append('\n');
+        }
+        StringJoiner summary = new StringJoiner(", ");
+        countByGrade.forEach((grade, count) -> summary.add(grade + " ×" + count));
+        targetLabel.setText(String.format("Cần: %s (CPA %.2f)%s", summary, result.cpa(),
+                result.optimal() ? "" : " ~"));
+        targetLabel.setTooltip(new Tooltip(detail.toString().trim()));
     }
 
     /**
@@ -422,7 +522,7 @@ public class SemesterController {
                     CourseOrderService.removeOrder(selectedSemester, course.getCode());
                 }
                 
-                persistAndReload();
+                persist();
             }
         });
     }
@@ -476,17 +576,12 @@ public class SemesterController {
             confirmAlert.showAndWait().ifPresent(response -> {
                 if (response == ButtonType.OK) {
                     // Cập nhật semester cho môn học
-                    course.setSemester(selectedSemester);
-                    
-                    // Cập nhật lại groupedCourses
-                    groupedCourses.get(currentSemester).remove(course);
-                    groupedCourses.get(selectedSemester).add(course);
+                    CourseService.changeSemester(course, selectedSemester);
                     
                     // Cập nhật danh sách hiển thị trên bảng
                     courseList.remove(course);
                     
-                    // Lưu lại ra CSV và reload toàn app
-                    persistAndReload();
+                    persist();
                 }
             });
         });
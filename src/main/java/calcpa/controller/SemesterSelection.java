@@ -0,0 +1,152 @@
+package calcpa.controller;
+
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.CustomMenuItem;
+import javafx.scene.control.MenuButton;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.SeparatorMenuItem;
+import javafx.util.Duration;
+
+import java.util.*;
+import java.util.prefs.Preferences;
+
+/**
+ * Menu chọn kỳ của các trang dashboard, gom các lần bật/tắt liên tiếp thành một lần tính lại.
+ *
+ * Mỗi lần bật/tắt chỉ sửa tập kỳ được chọn và hẹn lại bộ đếm DEBOUNCE; khi người dùng ngừng
+ * bấm đủ lâu thì lựa chọn mới nhất mới được lưu vào Preferences và onApply chạy đúng một lần.
+ * Mỗi thay đổi tăng generation, nên phần việc nào bắt đầu với generation cũ đều biết mình đã
+ * lỗi thời (isCurrent). Chọn tất cả / bỏ chọn / chọn liên tục áp dụng cả lô và tính lại ngay.
+ */
+final class SemesterSelection {
+    private static final Duration DEBOUNCE = Duration.millis(150);
+    private static final String PREF_KEY = "selectedSemesters";
+
+    private final MenuButton menu;
+    private final Preferences preferences;
+    // Tập kỳ được chọn của controller (theo thứ tự chọn), sửa tại chỗ
+    private final Set<String> selected;
+    private final Runnable onApply;
+    private final PauseTransition pause = new PauseTransition(DEBOUNCE);
+
+    private final Map<String, CheckBox> checks = new LinkedHashMap<>();
+    // Đang đặt lại các checkbox theo lô: listener bỏ qua
+    private boolean batching;
+    private long generation;
+
+    SemesterSelection(MenuButton menu, Class<?> owner, Set<String> selected, Runnable onApply) {
+        this.menu = menu;
+        this.preferences = Preferences.userNodeForPackage(owner);
+        this.selected = selected;
+        this.onApply = onApply;
+        pause.setOnFinished(e -> apply());
+    }
+
+    void load() {
+        String saved = preferences.get(PREF_KEY, "");
+        if (!saved.isEmpty()) {
+            selected.clear();
+            selected.addAll(List.of(saved.split(",")));
+        }
+    }
+
+    /**
+     * Dựng lại menu cho danh sách kỳ hiện có (theo thứ tự hiển thị).
+     */
+    void rebuild(Collection<String> semesters) {
+        List<MenuItem> items = new ArrayList<>();
+        items.add(action("Chọn tất cả", this::selectAll));
+        items.add(action("Bỏ chọn tất cả", this::selectNone));
+        items.add(action("Chọn liên tục (từ kỳ đầu đến kỳ cuối đã chọn)", this::selectRange));
+        items.add(new SeparatorMenuItem());
+
+        checks.clear();
+        for (String semester : semesters) {
+            CheckBox checkBox = new CheckBox(semester);
+            checkBox.setSelected(selected.contains(semester));
+            checkBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
+                if (batching) return;
+                if (newVal) selected.add(semester);
+                else selected.remove(semester);
+                changed();
+            });
+            checks.put(semester, checkBox);
+            CustomMenuItem menuItem = new CustomMenuItem(checkBox);
+            menuItem.setHideOnClick(false);
+            items.add(menuItem);
+        }
+        menu.getItems().setAll(items);
+    }
+
+    void selectAll() {
+        applyBatch(checks.keySet());
+    }
+
+    void selectNone() {
+        applyBatch(List.of());
+    }
+
+    /**
+     * Chọn mọi kỳ nằm giữa kỳ đầu và kỳ cuối đang được chọn (lấp các kỳ bị bỏ sót).
+     */
+    void selectRange() {
+        List<String> semesters = new ArrayList<>(checks.keySet());
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < semesters.size(); i++) {
+            if (!selected.contains(semesters.get(i))) continue;
+            if (first < 0) first = i;
+            last = i;
+        }
+        if (first < 0) return;
+        Set<String> range = new LinkedHashSet<>(selected);
+        range.addAll(semesters.subList(first, last + 1));
+        applyBatch(range);
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    /**
+     * true nếu lựa chọn chưa đổi kể từ khi phần việc mang generation này bắt đầu.
+     */
+    boolean isCurrent(long generation) {
+        return generation == this.generation && pause.getStatus() != Animation.Status.RUNNING;
+    }
+
+    private void applyBatch(Collection<String> semesters) {
+        // Giữ thứ tự chọn của các kỳ còn lại, kỳ mới thêm theo thứ tự menu
+        selected.retainAll(semesters);
+        selected.addAll(semesters);
+        batching = true;
+        try {
+            for (Map.Entry<String, CheckBox> entry : checks.entrySet()) {
+                entry.getValue().setSelected(selected.contains(entry.getKey()));
+            }
+        } finally {
+            batching = false;
+        }
+        generation++;
+        apply();
+    }
+
+    private void changed() {
+        generation++;
+        pause.playFromStart();
+    }
+
+    private void apply() {
+        pause.stop();
+        preferences.put(PREF_KEY, String.join(",", selected));
+        onApply.run();
+    }
+
+    private MenuItem action(String text, Runnable run) {
+        MenuItem item = new MenuItem(text);
+        item.setOnAction(e -> run.run());
+        return item;
+    }
+}
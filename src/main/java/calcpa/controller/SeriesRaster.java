@@ -0,0 +1,149 @@
+package calcpa.controller;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Vẽ rất nhiều series lên một lưới pixel thay vì tạo node cho từng điểm: mỗi pixel đếm số
+ * series đi qua nó, rồi đổi sang màu với độ đậm tăng theo số đếm (toArgb).
+ *
+ * Mỗi series được rút về độ phân giải pixel: trong một cột pixel chỉ giữ đoạn [min, max] của
+ * đường gấp khúc đi qua cột đó, nên một series không bao giờ đánh dấu một pixel hai lần và chi
+ * phí tỉ lệ với số cột được vẽ chứ không với số điểm. Các nhóm series được vẽ song song vào
+ * lưới riêng rồi cộng lại.
+ *
+ * Dữ liệu là ma trận series x category (values[s * categories + i], NaN = không có điểm); điểm
+ * i nằm ở x = (i + 0.5 - origin) * pixelsPerCategory, giá trị lower ở đáy, upper ở đỉnh.
+ */
+final class SeriesRaster {
+    // Dưới ngưỡng này vẽ trên một luồng, không đáng chia nhóm
+    private static final int PARALLEL_MIN_SERIES = 512;
+    // Số đếm tối đa có màu riêng, đậm hơn thì coi như bão hòa
+    private static final int MAX_LEVEL = 255;
+
+    private final int width;
+    private final int height;
+    private final int[] counts;
+    private final int[] argb;
+
+    SeriesRaster(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.counts = new int[width * height];
+        this.argb = new int[width * height];
+    }
+
+    int width() {
+        return width;
+    }
+
+    int height() {
+        return height;
+    }
+
+    /**
+     * Vẽ lại lưới đếm. Luồng gọi bị ngắt (tile mới hơn thay thế) thì dừng giữa chừng, lưới
+     * dở dang khi đó không được dùng.
+     */
+    void render(float[] values, int series, int categories, double origin, double pixelsPerCategory,
+                double lower, double upper) {
+        Arrays.fill(counts, 0);
+        if (series == 0 || categories == 0 || upper <= lower) return;
+        double yScale = (height - 1) / (upper - lower);
+        Thread caller = Thread.currentThread();
+        int chunks = series < PARALLEL_MIN_SERIES ? 1
+                : Math.min(Runtime.getRuntime().availableProcessors(), series / (PARALLEL_MIN_SERIES / 2));
+        if (chunks <= 1) {
+            for (int s = 0; s < series; s++) {
+                if ((s & 1023) == 0 && caller.isInterrupted()) return;
+                drawSeries(counts, values, s * categories, categories, origin, pixelsPerCategory, upper, yScale);
+            }
+            return;
+        }
+        int[][] partial = new int[chunks][];
+        IntStream.range(0, chunks).parallel().forEach(k -> {
+            int[] grid = k == 0 ? counts : new int[counts.length];
+            int from = (int) ((long) series * k / chunks);
+            int to = (int) ((long) series * (k + 1) / chunks);
+            for (int s = from; s < to; s++) {
+                if ((s & 1023) == 0 && caller.isInterrupted()) break;
+                drawSeries(grid, values, s * categories, categories, origin, pixelsPerCategory, upper, yScale);
+            }
+            partial[k] = grid;
+        });
+        for (int k = 1; k < chunks; k++) {
+            int[] grid = partial[k];
+            for (int p = 0; p < counts.length; p++) counts[p] += grid[p];
+        }
+    }
+
+    /**
+     * Màu của lưới vừa vẽ (ARGB không nhân trước alpha): mỗi series góp alpha độ đậm, pixel
+     * có n series đi qua có độ đậm 1 - (1 - alpha)^n. Mảng trả về được dùng lại ở lần gọi sau.
+     */
+    int[] toArgb(int rgb, double alpha) {
+        int[] levels = new int[MAX_LEVEL + 1];
+        for (int n = 1; n <= MAX_LEVEL; n++) {
+            int a = (int) Math.round(255 * (1 - Math.pow(1 - alpha, n)));
+            levels[n] = Math.max(a, 1) << 24 | (rgb & 0xFFFFFF);
+        }
+        for (int p = 0; p < counts.length; p++) argb[p] = levels[Math.min(counts[p], MAX_LEVEL)];
+        return argb;
+    }
+
+    private void drawSeries(int[] grid, float[] values, int base, int categories, double origin,
+                            double pixelsPerCategory, double upper, double yScale) {
+        int column = -1;
+        double min = 0;
+        double max = 0;
+        double prevX = Double.NaN;
+        double prevY = 0;
+        for (int i = 0; i < categories; i++) {
+            float v = values[base + i];
+            if (Float.isNaN(v)) continue;
+            double x = (i + 0.5 - origin) * pixelsPerCategory;
+            double y = (upper - v) * yScale;
+            if (Double.isNaN(prevX)) {
+                // Điểm đầu: nếu series chỉ có một điểm thì ít nhất vẫn hiện một pixel
+                if (x >= 0 && x < width) {
+                    column = (int) x;
+                    min = y;
+                    max = y;
+                }
+            } else if (x >= 0 && prevX < width) {
+                // Đoạn từ điểm trước tới điểm này, cắt theo từng cột pixel; y ở mép trái
+                // của cột (đã cắt theo đoạn) được tính dần
+                int c0 = prevX < 0 ? 0 : (int) prevX;
+                int c1 = x >= width ? width - 1 : (int) x;
+                double slope = (y - prevY) / (x - prevX);
+                double yLeft = c0 > prevX ? prevY + (c0 - prevX) * slope : prevY;
+                for (int c = c0; c <= c1; c++) {
+                    double yRight = c + 1 < x ? prevY + (c + 1 - prevX) * slope : y;
+                    double lo = yLeft < yRight ? yLeft : yRight;
+                    double hi = yLeft < yRight ? yRight : yLeft;
+                    if (c == column) {
+                        if (lo < min) min = lo;
+                        if (hi > max) max = hi;
+                    } else {
+                        flush(grid, column, min, max);
+                        column = c;
+                        min = lo;
+                        max = hi;
+                    }
+                    yLeft = yRight;
+                }
+            }
+            if (x >= width) break;
+            prevX = x;
+            prevY = y;
+        }
+        flush(grid, column, min, max);
+    }
+
+    private void flush(int[] grid, int column, double min, double max) {
+        if (column < 0) return;
+        int r0 = min <= 0 ? 0 : (int) (min + 0.5);
+        int r1 = max >= height - 1 ? height - 1 : (int) (max + 0.5);
+        for (int p = r0 * width + column; r0 <= r1; r0++, p += width) grid[p]++;
+    }
+}
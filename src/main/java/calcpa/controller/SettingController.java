@@ -1,4 +1,36 @@
 package calcpa.controller;
 
+import calcpa.service.GradingScale;
+import javafx.fxml.FXML;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+
 public class SettingController {
+    @FXML private ComboBox<GradingScale> scaleBox;
+    @FXML private Label scaleInfo;
+
+    @FXML
+    public void initialize() {
+        scaleBox.getItems().setAll(GradingScale.available());
+        scaleBox.getSelectionModel().select(GradingScale.active());
+        showScaleInfo();
+    }
+
+    /**
+     * Đổi thang điểm: chỉ đổi bảng tra đang dùng rồi vẽ lại các trang, không đọc lại dữ liệu.
+     */
+    @FXML
+    private void onScaleChanged() {
+        GradingScale scale = scaleBox.getValue();
+        if (scale == null || scale == GradingScale.active()) return;
+        GradingScale.setActive(scale.id());
+        showScaleInfo();
+        MainController main = MainController.getInstance();
+        if (main != null) main.onGradingScaleChanged();
+    }
+
+    private void showScaleInfo() {
+        GradingScale scale = GradingScale.active();
+        scaleInfo.setText("Điểm hợp lệ: " + String.join(", ", scale.acceptedTokens()));
+    }
 }
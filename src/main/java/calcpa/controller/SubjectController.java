@@ -1,7 +1,10 @@
 package calcpa.controller;
 
 import calcpa.model.Course;
-import calcpa.service.CourseService;
+import calcpa.service.CourseDelta;
+import calcpa.service.GpaCache;
+import calcpa.service.GradingScale;
+import calcpa.service.SubjectIndex;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -13,6 +16,7 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.FlowPane;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -21,7 +25,7 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.prefs.Preferences;
 
-public class SubjectController {
+public class SubjectController implements Page {
 
 	@FXML private FlowPane creditsPane;
 	@FXML private FlowPane gradesPane;
@@ -35,6 +39,13 @@ public class SubjectController {
 	@FXML private TableColumn<Course, String> colSemester;
 
 	private final ObservableList<Course> courseList = FXCollections.observableArrayList();
+	// Tra cứu (và danh sách kỳ cho bộ lọc) chạy ở luồng nền
+	private final BackgroundCompute compute = new BackgroundCompute("subject");
+	// Các kỳ đang có ô chọn
+	private Set<String> knownSemesters;
+
+	private record Search(Set<String> semesters, List<Course> courses) {
+	}
 
 	private final Map<Integer, CheckBox> creditChecks = new LinkedHashMap<>();
 	private final Map<String, CheckBox> gradeChecks = new LinkedHashMap<>();
@@ -49,31 +60,32 @@ public class SubjectController {
 	private static final String PREF_GRADES = "subject.selectedGrades";
 	private static final String PREF_SEMESTERS = "subject.selectedSemesters";
 
-	private static final String GRADE_OTHER = "OTHER";
-
 	private static final List<Integer> CREDIT_OPTIONS = List.of(0, 1, 2, 3, 6);
-	private static final List<String> GRADE_OPTIONS = List.of(
-			"A+", "A", "B+", "B", "C+", "C", "D+", "D", "F", GRADE_OTHER
-	);
-	private static final Set<String> STANDARD_GRADES = new LinkedHashSet<>(List.of(
-			"A+", "A", "B+", "B", "C+", "C", "D+", "D", "F"
-	));
 
 	@FXML
 	public void initialize() {
 		setupTable();
 		buildCreditOptions();
-		buildGradeOptions();
 		reloadData();
 	}
 
+	@Override
 	public void reloadData() {
-		buildSemesterOptions();
+		// Các lựa chọn điểm lấy theo thang điểm đang dùng, nên dựng lại mỗi lần reload
+		buildGradeOptions();
 		loadSelections();
 		applySelectionsToUI();
 		applyFilters();
 	}
 
+	/**
+	 * Cập nhật theo phần dữ liệu thay đổi (file bị sửa bên ngoài).
+	 */
+	@Override
+	public void onCoursesChanged(CourseDelta delta) {
+		applyFilters();
+	}
+
 	private void setupTable() {
 		colCode.setCellValueFactory(new PropertyValueFactory<>("code"));
 		colName.setCellValueFactory(new PropertyValueFactory<>("name"));
@@ -96,24 +108,19 @@ public class SubjectController {
 	private void buildGradeOptions() {
 		gradesPane.getChildren().clear();
 		gradeChecks.clear();
-		for (String grade : GRADE_OPTIONS) {
-			String label = grade.equals(GRADE_OTHER) ? "Khác" : grade;
+		List<String> options = new ArrayList<>(GradingScale.active().standardTokens());
+		options.add(SubjectIndex.GRADE_OTHER);
+		for (String grade : options) {
+			String label = grade.equals(SubjectIndex.GRADE_OTHER) ? "Khác" : grade;
 			CheckBox cb = new CheckBox(label);
 			gradeChecks.put(grade, cb);
 			gradesPane.getChildren().add(cb);
 		}
 	}
 
-	private void buildSemesterOptions() {
+	private void buildSemesterOptions(Set<String> semesters) {
 		semestersPane.getChildren().clear();
 		semesterChecks.clear();
-		Set<String> semesters = new TreeSet<>();
-		for (Course c : CourseService.getAllCourses()) {
-			String semester = c.getSemester();
-			if (semester != null && !semester.isBlank()) {
-				semesters.add(semester.trim());
-			}
-		}
 		for (String semester : semesters) {
 			CheckBox cb = new CheckBox(semester);
 			semesterChecks.put(semester, cb);
@@ -212,84 +219,33 @@ public class SubjectController {
 		applyFilters();
 	}
 
+	/**
+	 * Tra cứu ở luồng nền theo lựa chọn hiện tại (bản sao), rồi hiển thị kết quả và dựng lại
+	 * các ô chọn kỳ nếu danh sách kỳ đổi. Lần tra cứu mới hủy lần trước chưa xong.
+	 */
 	private void applyFilters() {
-		Map<String, List<Course>> byCode = new LinkedHashMap<>();
-		for (Course c : CourseService.getAllCourses()) {
-			String code = c.getCode();
-			if (code == null || code.isBlank()) continue;
-			byCode.computeIfAbsent(code.trim(), k -> new ArrayList<>()).add(c);
-		}
-
-		List<Course> filtered = new ArrayList<>();
-		for (List<Course> attempts : byCode.values()) {
-			List<Course> scopedAttempts = filterBySelectedSemesters(attempts);
-			if (scopedAttempts.isEmpty()) continue;
-
-			Course best = pickBestGrade(scopedAttempts);
-			if (best == null) continue;
-
-			if (matchesCredits(best) && matchesGrades(best)) {
-				filtered.add(best);
-			}
-		}
-		courseList.setAll(filtered);
-	}
-
-	private Course pickBestGrade(List<Course> attempts) {
-		Course best = null;
-		int bestRank = Integer.MIN_VALUE;
-		for (Course c : attempts) {
-			int rank = gradeRank(c.getGrade());
-			if (best == null || rank > bestRank) {
-				best = c;
-				bestRank = rank;
+		Set<Integer> credits = Set.copyOf(selectedCredits);
+		Set<String> grades = Set.copyOf(selectedGrades);
+		Set<String> semesters = Set.copyOf(selectedSemesters);
+		compute.submit(() -> new Search(semesterOptions(),
+				List.copyOf(SubjectIndex.current().search(credits, grades, semesters))), search -> {
+			if (!search.semesters().equals(knownSemesters)) {
+				knownSemesters = search.semesters();
+				buildSemesterOptions(knownSemesters);
+				applySelectionsToUI();
 			}
-		}
-		return best;
-	}
-
-	private int gradeRank(String grade) {
-		if (grade == null) return 0;
-		String value = grade.trim().toUpperCase();
-		return switch (value) {
-			case "A+" -> 9;
-			case "A" -> 8;
-			case "B+" -> 7;
-			case "B" -> 6;
-			case "C+" -> 5;
-			case "C" -> 4;
-			case "D+" -> 3;
-			case "D" -> 2;
-			case "F" -> 1;
-			default -> 0;
-		};
+			courseList.setAll(search.courses());
+		});
 	}
 
-	private boolean matchesCredits(Course c) {
-		if (selectedCredits.isEmpty()) return true;
-		return selectedCredits.contains(c.getCredits());
-	}
-
-	private List<Course> filterBySelectedSemesters(List<Course> attempts) {
-		if (selectedSemesters.isEmpty()) return attempts;
-		List<Course> filtered = new ArrayList<>();
-		for (Course c : attempts) {
-			String semester = c.getSemester();
-			if (semester != null && selectedSemesters.contains(semester.trim())) {
-				filtered.add(c);
+	// Các kỳ (đã trim, bỏ kỳ trống) theo thứ tự tăng dần; chạy ở luồng nền
+	private static Set<String> semesterOptions() {
+		Set<String> semesters = new TreeSet<>();
+		for (String semester : GpaCache.grouped().keySet()) {
+			if (semester != null && !semester.isBlank()) {
+				semesters.add(semester.trim());
 			}
 		}
-		return filtered;
-	}
-
-	private boolean matchesGrades(Course c) {
-		if (selectedGrades.isEmpty()) return true;
-		String grade = c.getGrade();
-		String value = grade == null ? "" : grade.trim().toUpperCase();
-		boolean isStandard = STANDARD_GRADES.contains(value);
-		if (isStandard) {
-			return selectedGrades.contains(value);
-		}
-		return selectedGrades.contains(GRADE_OTHER);
+		return Collections.unmodifiableSet(semesters);
 	}
 }
@@ -5,94 +5,138 @@ import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 
+/**
+ * Một lần học của một môn. Giá trị được giữ ở field thường; property JavaFX chỉ được tạo
+ * khi có bảng gọi tới (xxxProperty()), nên các môn chỉ dùng để tính toán không tốn thêm
+ * đối tượng property nào. Các phép tính theo kỳ chạy trên CourseStore.
+ */
 public class Course {
-    private final StringProperty code = new SimpleStringProperty();
-    private final StringProperty name = new SimpleStringProperty();
-    private final IntegerProperty credits = new SimpleIntegerProperty();
-    private final StringProperty grade = new SimpleStringProperty();
-    private final StringProperty semester = new SimpleStringProperty();
-    private final IntegerProperty displayOrder = new SimpleIntegerProperty(0);
+    private String code;
+    private String name;
+    private int credits;
+    private String grade;
+    private String semester;
+    private int displayOrder;
+    // Tạo khi cần (bảng hiển thị), sau đó là nơi giữ giá trị
+    private StringProperty codeProperty;
+    private StringProperty nameProperty;
+    private IntegerProperty creditsProperty;
+    private IntegerProperty displayOrderProperty;
+    // Mã của grade (xem GradeCode), cập nhật cùng với setGrade
+    private byte gradeCode;
+    // Mã sinh viên; rỗng với dữ liệu của một sinh viên (file không có cột student)
+    private String studentId;
 
     public Course(String code, String name, int credits, String grade, String semester) {
-        this.code.set(code);
-        this.name.set(name);
-        this.credits.set(credits);
-        this.grade.set(grade);
-        this.semester.set(semester);
+        this(code, name, credits, grade, semester, "");
+    }
+
+    public Course(String code, String name, int credits, String grade, String semester, String studentId) {
+        this.studentId = studentId == null ? "" : studentId;
+        this.code = code;
+        this.name = name;
+        this.credits = credits;
+        this.grade = grade;
+        this.gradeCode = GradeCode.of(grade);
+        this.semester = semester;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId == null ? "" : studentId;
     }
 
     public String getCode() {
-        return code.get();
+        return codeProperty == null ? code : codeProperty.get();
     }
 
     public void setCode(String code) {
-        this.code.set(code);
+        if (codeProperty == null) this.code = code;
+        else codeProperty.set(code);
     }
 
     public StringProperty codeProperty() {
-        return code;
+        if (codeProperty == null) codeProperty = new SimpleStringProperty(this, "code", code);
+        return codeProperty;
     }
 
     public String getName() {
-        return name.get();
+        return nameProperty == null ? name : nameProperty.get();
     }
 
     public void setName(String name) {
-        this.name.set(name);
+        if (nameProperty == null) this.name = name;
+        else nameProperty.set(name);
     }
 
     public StringProperty nameProperty() {
-        return name;
+        if (nameProperty == null) nameProperty = new SimpleStringProperty(this, "name", name);
+        return nameProperty;
     }
 
     public int getCredits() {
-        return credits.get();
+        return creditsProperty == null ? credits : creditsProperty.get();
     }
 
     public void setCredits(int credits) {
-        this.credits.set(credits);
+        if (creditsProperty == null) this.credits = credits;
+        else creditsProperty.set(credits);
     }
 
     public IntegerProperty creditsProperty() {
-        return credits;
+        if (creditsProperty == null) creditsProperty = new SimpleIntegerProperty(this, "credits", credits);
+        return creditsProperty;
     }
 
     public String getGrade() {
-        return grade.get();
+        return grade;
     }
 
     public void setGrade(String grade) {
-        this.grade.set(grade);
+        this.grade = grade;
+        this.gradeCode = GradeCode.of(grade);
+    }
+
+    public byte getGradeCode() {
+        return gradeCode;
     }
 
     public String getSemester() {
-        return semester.get();
+        return semester;
     }
 
     public void setSemester(String semester) {
-        this.semester.set(semester);
+        this.semester = semester;
     }
 
     public int getDisplayOrder() {
-        return displayOrder.get();
+        return displayOrderProperty == null ? displayOrder : displayOrderProperty.get();
     }
 
     public void setDisplayOrder(int displayOrder) {
-        this.displayOrder.set(displayOrder);
+        if (displayOrderProperty == null) this.displayOrder = displayOrder;
+        else displayOrderProperty.set(displayOrder);
     }
 
     public IntegerProperty displayOrderProperty() {
-        return displayOrder;
+        if (displayOrderProperty == null) {
+            displayOrderProperty = new SimpleIntegerProperty(this, "displayOrder", displayOrder);
+        }
+        return displayOrderProperty;
     }
 
     public String toCsvLine() {
-        return String.join(",", getSemester(), getCode(), getName(),
+        String line = String.join(",", getSemester(), getCode(), getName(),
                 String.valueOf(getCredits()), getGrade() == null ? "" : getGrade() );
+        return studentId.isEmpty() ? line : line + "," + studentId;
     }
 
     @Override
     public String toString() {
-        return "Course{" + "semester='" + getSemester() + '\'' + ", code='" + getCode() + '\'' + ", name='" +
+        return "Course{" + (studentId.isEmpty() ? "" : "student='" + studentId + "', ") + "semester='" + getSemester() + '\'' + ", code='" + getCode() + '\'' + ", name='" +
                 getName() + '\'' + ", credits=" + getCredits() + ", grade='" + getGrade() + '\'' + '}';
     }
 
@@ -0,0 +1,262 @@
+package calcpa.model;
+
+import java.util.*;
+
+/**
+ * Bản chụp dạng cột của một danh sách môn, dùng cho các phép tính GPA/CPA/tín chỉ.
+ *
+ * Mỗi dòng là một lần học, lưu trong các mảng nguyên thủy: id kỳ, id mã môn, tín chỉ và mã
+ * điểm (GradeCode). Các dòng được xếp theo kỳ (giữ thứ tự gốc trong cùng một kỳ), dòng của
+ * kỳ s nằm trong [semesterStart(s), semesterEnd(s)). Course vẫn là mô hình hiển thị/sửa;
+ * store được dựng lại từ danh sách khi thêm/xóa môn, còn sửa điểm hoặc tín chỉ của một môn
+ * chỉ vá đúng dòng đó (update).
+ *
+ * Không thread-safe: chỉ đọc được từ nhiều luồng khi không còn ai gọi update/codeRow.
+ */
+public final class CourseStore {
+    // Mã môn rỗng/null: tính GPA như mọi mã khác nhưng bỏ qua khi cộng tín chỉ tích lũy
+    private final String[] semesters;
+    private final int[] semesterStart;
+    private final String[] codes;
+    private final boolean[] blankCode;
+
+    private final Course[] courses;
+    private final int[] codeIds;
+    private final byte[] credits;
+    // Chỉ dùng khi có số tín chỉ ngoài 0..255 (dữ liệu bất thường)
+    private final int[] wideCredits;
+    private final byte[] grades;
+
+    // Các dòng của từng mã môn theo thứ tự dòng, dựng khi cần (codeRow)
+    private int[] codeRowStart;
+    private int[] codeRows;
+
+    private Set<String> semesterSet;
+
+    private CourseStore(String[] semesters, int[] semesterStart, String[] codes, Course[] courses,
+                        int[] codeIds, int[] creditValues, byte[] grades) {
+        this.courses = courses;
+        this.semesters = semesters;
+        this.semesterStart = semesterStart;
+        this.codes = codes;
+        this.blankCode = new boolean[codes.length];
+        for (int i = 0; i < codes.length; i++) blankCode[i] = codes[i] == null || codes[i].isBlank();
+        this.codeIds = codeIds;
+        this.grades = grades;
+
+        boolean narrow = true;
+        for (int v : creditValues) {
+            if (v < 0 || v > 0xFF) {
+                narrow = false;
+                break;
+            }
+        }
+        if (narrow) {
+            this.credits = new byte[creditValues.length];
+            for (int i = 0; i < creditValues.length; i++) credits[i] = (byte) creditValues[i];
+            this.wideCredits = null;
+        } else {
+            this.credits = null;
+            this.wideCredits = creditValues;
+        }
+    }
+
+    /**
+     * Dựng store từ danh sách môn, các kỳ theo thứ tự tăng dần (như GpaService.groupBySemester).
+     */
+    public static CourseStore of(List<Course> courses) {
+        int n = courses.size();
+        Map<String, Integer> semesterIds = new HashMap<>();
+        int[] rowSemester = new int[n];
+        for (int i = 0; i < n; i++) {
+            String semester = courses.get(i).getSemester();
+            Integer id = semesterIds.get(semester);
+            if (id == null) {
+                id = semesterIds.size();
+                semesterIds.put(semester, id);
+            }
+            rowSemester[i] = id;
+        }
+
+        // Đánh lại id kỳ theo thứ tự tăng dần
+        String[] semesters = semesterIds.keySet().toArray(new String[0]);
+        Arrays.sort(semesters, Comparator.nullsFirst(Comparator.naturalOrder()));
+        int[] remap = new int[semesters.length];
+        for (int i = 0; i < semesters.length; i++) remap[semesterIds.get(semesters[i])] = i;
+
+        // Đếm rồi xếp ổn định theo kỳ
+        int[] start = new int[semesters.length + 1];
+        for (int i = 0; i < n; i++) start[remap[rowSemester[i]] + 1]++;
+        for (int s = 0; s < semesters.length; s++) start[s + 1] += start[s];
+        int[] next = Arrays.copyOf(start, semesters.length);
+        Course[] ordered = new Course[n];
+        for (int i = 0; i < n; i++) ordered[next[remap[rowSemester[i]]]++] = courses.get(i);
+
+        return build(semesters, start, ordered);
+    }
+
+    /**
+     * Dựng store từ map đã group theo kỳ, giữ thứ tự kỳ của map.
+     */
+    public static CourseStore of(Map<String, List<Course>> grouped) {
+        String[] semesters = grouped.keySet().toArray(new String[0]);
+        int[] start = new int[semesters.length + 1];
+        for (int s = 0; s < semesters.length; s++) start[s + 1] = start[s] + grouped.get(semesters[s]).size();
+        Course[] ordered = new Course[start[semesters.length]];
+        for (int s = 0; s < semesters.length; s++) {
+            int row = start[s];
+            for (Course c : grouped.get(semesters[s])) ordered[row++] = c;
+        }
+        return build(semesters, start, ordered);
+    }
+
+    private static CourseStore build(String[] semesters, int[] start, Course[] ordered) {
+        int n = ordered.length;
+        Map<String, Integer> codeIds = new HashMap<>();
+        int[] rowCode = new int[n];
+        int[] rowCredits = new int[n];
+        byte[] rowGrade = new byte[n];
+        for (int i = 0; i < n; i++) {
+            Course c = ordered[i];
+            Integer id = codeIds.get(c.getCode());
+            if (id == null) {
+                id = codeIds.size();
+                codeIds.put(c.getCode(), id);
+            }
+            rowCode[i] = id;
+            rowCredits[i] = c.getCredits();
+            rowGrade[i] = c.getGradeCode();
+        }
+        String[] codes = new String[codeIds.size()];
+        codeIds.forEach((code, id) -> codes[id] = code);
+        return new CourseStore(semesters, start, codes, ordered, rowCode, rowCredits, rowGrade);
+    }
+
+    public int size() {
+        return codeIds.length;
+    }
+
+    public int semesterCount() {
+        return semesters.length;
+    }
+
+    public String semester(int semesterId) {
+        return semesters[semesterId];
+    }
+
+    /**
+     * Các kỳ theo thứ tự của store (chỉ đọc).
+     */
+    public Set<String> semesterSet() {
+        if (semesterSet == null) {
+            semesterSet = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(semesters)));
+        }
+        return semesterSet;
+    }
+
+    public int semesterStart(int semesterId) {
+        return semesterStart[semesterId];
+    }
+
+    public int semesterEnd(int semesterId) {
+        return semesterStart[semesterId + 1];
+    }
+
+    /**
+     * Kỳ chứa dòng row (tìm nhị phân trên mảng bắt đầu kỳ).
+     */
+    public int semesterOf(int row) {
+        int lo = 0;
+        int hi = semesters.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (semesterStart[mid] <= row) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    public Course course(int row) {
+        return courses[row];
+    }
+
+    /**
+     * Dòng của đúng đối tượng c trong kỳ semesterId, -1 nếu không có.
+     */
+    public int rowOf(Course c, int semesterId) {
+        int end = semesterEnd(semesterId);
+        for (int row = semesterStart(semesterId); row < end; row++) {
+            if (courses[row] == c) return row;
+        }
+        return -1;
+    }
+
+    /**
+     * Ghi lại tín chỉ và mã điểm của một dòng sau khi môn bị sửa. Trả về false nếu số tín chỉ
+     * không vừa cột hiện tại, khi đó phải dựng lại store.
+     */
+    public boolean update(int row, int creditValue, byte grade) {
+        if (credits != null) {
+            if (creditValue < 0 || creditValue > 0xFF) return false;
+            credits[row] = (byte) creditValue;
+        } else {
+            wideCredits[row] = creditValue;
+        }
+        grades[row] = grade;
+        return true;
+    }
+
+    public int codeCount() {
+        return codes.length;
+    }
+
+    public String code(int codeId) {
+        return codes[codeId];
+    }
+
+    public int codeId(int row) {
+        return codeIds[row];
+    }
+
+    public boolean isBlankCode(int codeId) {
+        return blankCode[codeId];
+    }
+
+    /**
+     * Các dòng của mã môn codeId là codeRow(i) với i trong [codeRowStart(codeId), codeRowEnd(codeId)),
+     * tăng dần (tức theo thứ tự kỳ).
+     */
+    public int codeRowStart(int codeId) {
+        buildCodeRows();
+        return codeRowStart[codeId];
+    }
+
+    public int codeRowEnd(int codeId) {
+        buildCodeRows();
+        return codeRowStart[codeId + 1];
+    }
+
+    public int codeRow(int i) {
+        return codeRows[i];
+    }
+
+    private void buildCodeRows() {
+        if (codeRows != null) return;
+        int[] start = new int[codes.length + 1];
+        for (int code : codeIds) start[code + 1]++;
+        for (int i = 0; i < codes.length; i++) start[i + 1] += start[i];
+        int[] next = Arrays.copyOf(start, codes.length);
+        int[] rows = new int[codeIds.length];
+        for (int row = 0; row < codeIds.length; row++) rows[next[codeIds[row]]++] = row;
+        codeRowStart = start;
+        codeRows = rows;
+    }
+
+    public int credits(int row) {
+        return credits != null ? credits[row] & 0xFF : wideCredits[row];
+    }
+
+    public byte grade(int row) {
+        return grades[row];
+    }
+}
@@ -0,0 +1,82 @@
+package calcpa.model;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bảng mã cho các ký hiệu điểm (token) dạng byte, dùng chung cho mọi thang điểm.
+ *
+ * Mỗi token khác nhau (sau khi trim và viết hoa) nhận một mã cố định trong suốt phiên chạy,
+ * Course giải mã điểm một lần khi gán. Ý nghĩa của mã (điểm hệ 4, đỗ/trượt, thứ hạng)
+ * nằm trong bảng tra của từng GradingScale, nên đổi thang điểm không cần giải mã lại.
+ *
+ * Mã 0 (NONE) dành cho điểm trống; khi đã dùng hết MAX_CODES mã, token mới cũng nhận NONE.
+ */
+public final class GradeCode {
+    public static final byte NONE = 0;
+    public static final int MAX_CODES = 256;
+
+    // Token đã chuẩn hóa theo mã
+    private static final String[] tokens = new String[MAX_CODES];
+    private static final ConcurrentHashMap<String, Byte> byToken = new ConcurrentHashMap<>();
+    // Chuỗi gốc (chưa chuẩn hóa) đã gặp -> mã, để Course không phải trim/viết hoa mỗi lần
+    private static final ConcurrentHashMap<String, Byte> byRaw = new ConcurrentHashMap<>();
+    private static final int MAX_RAW_ENTRIES = 4096;
+    private static int size = 1;
+
+    static {
+        tokens[NONE] = "";
+    }
+
+    private GradeCode() {
+    }
+
+    /**
+     * Mã của điểm, cấp mã mới nếu token chưa từng gặp.
+     */
+    public static byte of(String grade) {
+        if (grade == null) return NONE;
+        Byte cached = byRaw.get(grade);
+        if (cached != null) return cached;
+        byte code = register(normalize(grade));
+        if (byRaw.size() < MAX_RAW_ENTRIES) byRaw.put(grade, code);
+        return code;
+    }
+
+    /**
+     * Mã của điểm nếu token đã được đăng ký, ngược lại NONE. Không cấp mã mới,
+     * dùng cho giá trị người dùng gõ vào.
+     */
+    public static byte find(String grade) {
+        if (grade == null) return NONE;
+        Byte code = byToken.get(normalize(grade));
+        return code == null ? NONE : code;
+    }
+
+    /**
+     * Token đã chuẩn hóa của mã (chuỗi rỗng với NONE).
+     */
+    public static String token(byte code) {
+        String token = tokens[code & 0xFF];
+        return token == null ? "" : token;
+    }
+
+    public static String normalize(String grade) {
+        return grade.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static byte register(String token) {
+        if (token.isEmpty()) return NONE;
+        Byte code = byToken.get(token);
+        if (code != null) return code;
+        synchronized (tokens) {
+            code = byToken.get(token);
+            if (code != null) return code;
+            if (size >= MAX_CODES) return NONE;
+            code = (byte) size;
+            tokens[size++] = token;
+            byToken.put(token, code);
+            return code;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+
+import java.util.*;
+
+/**
+ * Lịch sử học của từng sinh viên với từng mã môn: (mã sinh viên, mã môn đã trim) -> các lần học
+ * theo thứ tự kỳ (cùng kỳ thì theo thứ tự trong danh sách môn), kèm lần học tốt nhất theo thang
+ * điểm đang dùng. Dữ liệu cả khóa có nhiều sinh viên học cùng mã, mỗi người một nhóm riêng.
+ *
+ * CourseService giữ chỉ mục khớp với danh sách môn: dựng lại khi nạp dữ liệu (setData), còn
+ * mỗi lần thêm/xóa/sửa/đổi kỳ chỉ cập nhật các nhóm bị ảnh hưởng (apply). Môn không có mã
+ * (null) bị bỏ qua. Thứ tự trong danh sách được nhớ bằng số thứ tự tăng dần: môn mới luôn được
+ * thêm vào cuối danh sách, môn đổi kỳ giữ nguyên số thứ tự.
+ *
+ * Ghi trên luồng UI (luồng sở hữu danh sách môn của CourseService). Danh sách lần học của mỗi
+ * nhóm là bất biến và được thay mới khi đổi, nên các luồng tính nền đọc được mà không cần khóa.
+ */
+public final class AttemptIndex {
+    private static final Comparator<String> SEMESTER_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private static final Map<Key, Attempts> groups = new HashMap<>();
+    private static long nextSeq;
+
+    private record Key(String studentId, String code) {
+    }
+
+    private record Entry(Course course, long seq) {
+    }
+
+    private record Best(Course course, GradingScale scale) {
+    }
+
+    /**
+     * Các lần học của một sinh viên với một mã môn.
+     */
+    public static final class Attempts {
+        private final Key key;
+        private volatile List<Entry> entries = List.of();
+        private volatile Best best;
+
+        private Attempts(Key key) {
+            this.key = key;
+        }
+
+        public String studentId() {
+            return key.studentId();
+        }
+
+        public String code() {
+            return key.code();
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+        /**
+         * Lần học thứ i theo thứ tự kỳ.
+         */
+        public Course get(int i) {
+            return entries.get(i).course();
+        }
+
+        /**
+         * Vị trí của đúng đối tượng c, -1 nếu không có.
+         */
+        public int indexOf(Course c) {
+            List<Entry> entries = this.entries;
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).course() == c) return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Lần học có hạng điểm cao nhất (thang đang dùng), cùng hạng thì lấy lần học sớm nhất
+         * theo thứ tự kỳ - cùng cách chọn với GpaService.RunningBest khi tính CPA.
+         */
+        public Course best() {
+            GradingScale scale = GradingScale.active();
+            Best cached = best;
+            if (cached == null || cached.scale() != scale) {
+                Entry top = null;
+                int topRank = Integer.MIN_VALUE;
+                for (Entry e : entries) {
+                    int rank = scale.rank(e.course().getGradeCode());
+                    if (top == null || rank > topRank) {
+                        top = e;
+                        topRank = rank;
+                    }
+                }
+                cached = new Best(top == null ? null : top.course(), scale);
+                best = cached;
+            }
+            return cached.course();
+        }
+
+        /**
+         * Các lần học theo hạng điểm giảm dần, cùng hạng thì theo thứ tự kỳ (phần tử đầu là best()).
+         */
+        public List<Course> byRank(GradingScale scale) {
+            List<Entry> sorted = new ArrayList<>(entries);
+            // Sắp xếp ổn định: cùng hạng giữ thứ tự kỳ của entries
+            sorted.sort(Comparator.comparingInt((Entry e) -> -scale.rank(e.course().getGradeCode())));
+            List<Course> courses = new ArrayList<>(sorted.size());
+            for (Entry e : sorted) courses.add(e.course());
+            return courses;
+        }
+
+        /**
+         * Số thứ tự nhỏ nhất: nhóm xuất hiện lần đầu ở đâu trong danh sách.
+         */
+        long firstSeq() {
+            List<Entry> entries = this.entries;
+            long first = Long.MAX_VALUE;
+            for (Entry e : entries) first = Math.min(first, e.seq());
+            return first;
+        }
+
+        private void insert(Course c, long seq) {
+            List<Entry> entries = new ArrayList<>(this.entries);
+            int lo = 0;
+            int hi = entries.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                Entry e = entries.get(mid);
+                int cmp = SEMESTER_ORDER.compare(e.course().getSemester(), c.getSemester());
+                if (cmp < 0 || (cmp == 0 && e.seq() < seq)) lo = mid + 1;
+                else hi = mid;
+            }
+            entries.add(lo, new Entry(c, seq));
+            this.entries = List.copyOf(entries);
+            best = null;
+        }
+
+        private Entry remove(int i) {
+            List<Entry> entries = new ArrayList<>(this.entries);
+            Entry removed = entries.remove(i);
+            this.entries = List.copyOf(entries);
+            best = null;
+            return removed;
+        }
+    }
+
+    /**
+     * Các lần học của sinh viên với mã môn, null nếu không có.
+     */
+    public static synchronized Attempts get(String studentId, String code) {
+        return code == null ? null : groups.get(new Key(studentId, code.trim()));
+    }
+
+    /**
+     * Mọi nhóm (sinh viên, mã môn), theo thứ tự xuất hiện lần đầu trong danh sách.
+     */
+    public static synchronized List<Attempts> all() {
+        List<Attempts> all = new ArrayList<>(groups.values());
+        all.sort(Comparator.comparingLong(Attempts::firstSeq));
+        return all;
+    }
+
+    public static synchronized int groupCount() {
+        return groups.size();
+    }
+
+    /**
+     * Số môn cùng (sinh viên, kỳ, mã) với c đứng trước c trong danh sách môn, 0 nếu không có
+     * môn trùng khóa. CourseJournal ghi số này để phân biệt các dòng trùng khóa.
+     */
+    static synchronized int duplicatesBefore(Course c) {
+        Attempts attempts = attemptsFor(c, false);
+        if (attempts == null) return 0;
+        List<Entry> entries = attempts.entries;
+        int i = attempts.indexOf(c);
+        if (i < 0) return 0;
+        long seq = entries.get(i).seq();
+        int count = 0;
+        for (Entry e : entries) {
+            Course other = e.course();
+            // Cùng nhóm nghĩa là cùng sinh viên và cùng mã sau khi trim; journal so mã nguyên văn
+            if (e.seq() < seq && Objects.equals(other.getSemester(), c.getSemester())
+                    && Objects.equals(other.getCode(), c.getCode())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Dựng lại từ đầu theo danh sách môn vừa nạp.
+     */
+    static synchronized void rebuild(List<Course> courses) {
+        groups.clear();
+        nextSeq = 0;
+        Map<Key, List<Entry>> entries = new HashMap<>();
+        for (Course c : courses) {
+            Attempts attempts = attemptsFor(c, true);
+            if (attempts != null) entries.computeIfAbsent(attempts.key, k -> new ArrayList<>()).add(new Entry(c, nextSeq));
+            nextSeq++;
+        }
+        for (Attempts attempts : groups.values()) {
+            List<Entry> list = entries.get(attempts.key);
+            list.sort(Comparator.comparing((Entry e) -> e.course().getSemester(), SEMESTER_ORDER));
+            attempts.entries = List.copyOf(list);
+        }
+    }
+
+    /**
+     * Cập nhật theo phần thay đổi vừa áp vào danh sách môn. Môn đổi kỳ đến dưới dạng
+     * removed (bản sao với kỳ cũ) + added (chính đối tượng đã đổi kỳ).
+     */
+    static synchronized void apply(CourseDelta delta) {
+        for (Course c : delta.removed()) {
+            Attempts attempts = attemptsFor(c, false);
+            if (attempts == null) continue;
+            int i = attempts.indexOf(c);
+            if (i < 0) continue;
+            attempts.remove(i);
+            if (attempts.size() == 0) groups.remove(attempts.key);
+        }
+        for (Course c : delta.added()) {
+            Attempts attempts = attemptsFor(c, true);
+            if (attempts == null) continue;
+            int i = attempts.indexOf(c);
+            long seq = i >= 0 ? attempts.remove(i).seq() : nextSeq++;
+            attempts.insert(c, seq);
+        }
+        for (Course c : delta.changed()) {
+            Attempts attempts = attemptsFor(c, false);
+            if (attempts != null) attempts.best = null;
+        }
+    }
+
+    private static Attempts attemptsFor(Course c, boolean create) {
+        String code = c.getCode();
+        if (code == null) return null;
+        Key key = new Key(c.getStudentId(), code.trim());
+        return create ? groups.computeIfAbsent(key, Attempts::new) : groups.get(key);
+    }
+}
@@ -0,0 +1,163 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+import calcpa.model.CourseStore;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tính GPA/CPA/tín chỉ tích lũy theo kỳ cho cả khóa (dữ liệu nhiều sinh viên).
+ *
+ * Môn học được nhóm theo mã sinh viên, mỗi sinh viên được tính độc lập bằng đúng các hàm
+ * GpaService mà dashboard dùng. Danh sách sinh viên được chia đôi dần trên ForkJoinPool
+ * cho tới khi mỗi phần còn tối đa LEAF_SIZE sinh viên.
+ */
+public class CohortService {
+    private static final int LEAF_SIZE = 64;
+
+    private static volatile BatchStats lastStats = new BatchStats(0, 0, 0, 0);
+
+    /**
+     * Số liệu theo kỳ của một sinh viên, các map theo thứ tự kỳ.
+     */
+    public record StudentSeries(String studentId,
+                                Map<String, Double> gpaBySemester,
+                                Map<String, Double> cpaBySemester,
+                                Map<String, Integer> creditsBySemester) {
+        /**
+         * CPA sau kỳ cuối cùng (0 nếu chưa có kỳ nào).
+         */
+        public double finalCpa() {
+            double last = 0.0;
+            for (double cpa : cpaBySemester.values()) last = cpa;
+            return last;
+        }
+    }
+
+    /**
+     * Thống kê lần tính gần nhất: số sinh viên, số môn, thời gian và số luồng.
+     */
+    public record BatchStats(int students, long courses, long elapsedNanos, int parallelism) {
+        public double studentsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : students * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Tính %d sinh viên (%d môn) trong %.1f ms trên %d luồng - %.0f sinh viên/s",
+                    students, courses, elapsedNanos / 1_000_000.0, parallelism, studentsPerSecond());
+        }
+    }
+
+    public static BatchStats getLastStats() {
+        return lastStats;
+    }
+
+    /**
+     * Nhóm môn theo mã sinh viên, giữ thứ tự sinh viên xuất hiện lần đầu và thứ tự môn trong file.
+     */
+    public static Map<String, List<Course>> groupByStudent(List<Course> courses) {
+        Map<String, List<Course>> map = new LinkedHashMap<>();
+        for (Course c : courses) map.computeIfAbsent(c.getStudentId(), k -> new ArrayList<>()).add(c);
+        return map;
+    }
+
+    /**
+     * Tính số liệu theo kỳ (mọi kỳ) cho từng sinh viên. Kết quả theo thứ tự của groupByStudent.
+     * Không sửa danh sách đầu vào; nên gọi ở luồng nền với dữ liệu lớn.
+     */
+    public static List<StudentSeries> computeAll(List<Course> courses) {
+        long start = System.nanoTime();
+        Map<String, List<Course>> byStudent = groupByStudent(courses);
+        String[] ids = byStudent.keySet().toArray(new String[0]);
+        List<List<Course>> lists = new ArrayList<>(byStudent.values());
+        StudentSeries[] out = new StudentSeries[ids.length];
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        if (ids.length > 0) pool.invoke(new StudentTask(ids, lists, out, 0, ids.length));
+
+        lastStats = new BatchStats(ids.length, courses.size(), System.nanoTime() - start, pool.getParallelism());
+        return Arrays.asList(out);
+    }
+
+    /**
+     * Như computeAll nhưng chỉ tính lại các sinh viên trong students và sinh viên chưa có trong
+     * previous; sinh viên khác giữ nguyên kết quả cũ, sinh viên không còn môn nào bị bỏ.
+     * previous là kết quả computeAll / recompute trên dữ liệu trước khi đổi.
+     */
+    public static List<StudentSeries> recompute(List<StudentSeries> previous, List<Course> courses,
+                                                Set<String> students) {
+        long start = System.nanoTime();
+        Map<String, StudentSeries> known = new HashMap<>();
+        for (StudentSeries s : previous) known.put(s.studentId(), s);
+        Map<String, List<Course>> byStudent = groupByStudent(courses);
+        StudentSeries[] out = new StudentSeries[byStudent.size()];
+
+        // Vị trí trong out và danh sách môn của các sinh viên phải tính lại
+        List<Integer> slots = new ArrayList<>();
+        List<String> staleIds = new ArrayList<>();
+        List<List<Course>> lists = new ArrayList<>();
+        long staleCourses = 0;
+        int i = 0;
+        for (Map.Entry<String, List<Course>> e : byStudent.entrySet()) {
+            StudentSeries old = known.get(e.getKey());
+            if (old == null || students.contains(e.getKey())) {
+                slots.add(i);
+                staleIds.add(e.getKey());
+                lists.add(e.getValue());
+                staleCourses += e.getValue().size();
+            } else {
+                out[i] = old;
+            }
+            i++;
+        }
+
+        String[] ids = staleIds.toArray(new String[0]);
+        StudentSeries[] fresh = new StudentSeries[ids.length];
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        if (ids.length > 0) pool.invoke(new StudentTask(ids, lists, fresh, 0, ids.length));
+        for (int k = 0; k < fresh.length; k++) out[slots.get(k)] = fresh[k];
+
+        lastStats = new BatchStats(ids.length, staleCourses, System.nanoTime() - start, pool.getParallelism());
+        return Arrays.asList(out);
+    }
+
+    private static StudentSeries compute(String studentId, List<Course> courses) {
+        CourseStore store = CourseStore.of(courses);
+        Set<String> all = store.semesterSet();
+        return new StudentSeries(studentId,
+                GpaService.calcGpaBySemester(store, all),
+                GpaService.calcCpaBySemester(store, all),
+                GpaService.calcCumulativeCreditsBySemester(store, all));
+    }
+
+    // ForkJoinTask là Serializable nhưng task chỉ sống trong pool, không bao giờ được serialize
+    @SuppressWarnings("serial")
+    private static class StudentTask extends RecursiveAction {
+        private final String[] ids;
+        private final List<List<Course>> lists;
+        private final StudentSeries[] out;
+        private final int lo;
+        private final int hi;
+
+        StudentTask(String[] ids, List<List<Course>> lists, StudentSeries[] out, int lo, int hi) {
+            this.ids = ids;
+            this.lists = lists;
+            this.out = out;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= LEAF_SIZE) {
+                for (int i = lo; i < hi; i++) out[i] = CohortService.compute(ids[i], lists.get(i));
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new StudentTask(ids, lists, out, lo, mid), new StudentTask(ids, lists, out, mid, hi));
+        }
+    }
+}
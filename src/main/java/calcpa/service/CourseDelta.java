@@ -0,0 +1,40 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Phần thay đổi của dữ liệu môn học so với lần trước, khóa theo (student, semester, code).
+ * Môn đổi kỳ xuất hiện như một cặp removed + added.
+ */
+public record CourseDelta(List<Course> added, List<Course> removed, List<Course> changed) {
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    /**
+     * Các kỳ có môn bị thêm, xóa hoặc sửa.
+     */
+    public Set<String> affectedSemesters() {
+        Set<String> semesters = new LinkedHashSet<>();
+        for (Course c : added) semesters.add(c.getSemester());
+        for (Course c : removed) semesters.add(c.getSemester());
+        for (Course c : changed) semesters.add(c.getSemester());
+        return semesters;
+    }
+
+    /**
+     * Các sinh viên có môn bị thêm, xóa hoặc sửa.
+     */
+    public Set<String> affectedStudents() {
+        Set<String> students = new LinkedHashSet<>();
+        for (Course c : added) students.add(c.getStudentId());
+        for (Course c : removed) students.add(c.getStudentId());
+        for (Course c : changed) students.add(c.getStudentId());
+        return students;
+    }
+}
@@ -0,0 +1,337 @@
+package calcpa.service;
+
+import calcpa.DataFiles;
+import calcpa.ExcelReader;
+import calcpa.model.Course;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Nhật ký thay đổi chỉ ghi nối (append-only) cho dữ liệu môn học.
+ *
+ * Mỗi lần sửa điểm / tín chỉ / chuyển kỳ / xóa môn chỉ thêm một dòng vào bộ đệm; luồng ghi
+ * của PersistenceService gộp các dòng trong một cửa sổ ngắn, ghi nối vào data.journal và
+ * fsync một lần cho cả lô. Định kỳ, journal được gộp (compact) vào data.csv trên cùng luồng đó.
+ *
+ * Định dạng mỗi dòng: op|semester|code|value[|student[|n]], với op là
+ * G (đặt điểm), C (đặt tín chỉ), M (chuyển sang kỳ value), R (xóa môn, không có value).
+ * Cột student chỉ có khi môn thuộc dữ liệu nhiều sinh viên hoặc khi cần cột n. n là số môn
+ * cùng (student, semester, code) đứng trước môn này trong danh sách (vd học lại trong cùng kỳ),
+ * chỉ ghi khi khác 0; nhờ nó replay sửa đúng dòng chứ không dồn hết vào dòng trùng đầu tiên.
+ *
+ * Dòng "#base|dấu" ghi dấu (DataFiles.Signature) của file gốc mà các bản ghi áp lên: dòng
+ * đầu tiên khi journal được tạo, thêm một dòng mỗi khi compact ghi lại file gốc. Journal chỉ
+ * được replay khi file gốc hiện tại khớp một trong các dấu đó; nếu không, file đã bị sửa từ
+ * bên ngoài và bản sửa đó thắng, journal cũ được chuyển sang data.journal.stale.
+ * Journal không có dòng #base (bản cũ) luôn được replay.
+ */
+public class CourseJournal {
+    private static final String BASE_PREFIX = "#base|";
+    private static final long COMPACT_INTERVAL_S = 60;
+    private static final long COMPACT_THRESHOLD_BYTES = 1024 * 1024;
+
+    // appendLock bảo vệ bộ đệm và channel ghi; compactLock đảm bảo load và compact không chạy chồng nhau
+    private static final Object appendLock = new Object();
+    private static final Object compactLock = new Object();
+
+    private static final StringBuilder buffer = new StringBuilder();
+    private static FileChannel channel;
+    // Dấu của file gốc mà dữ liệu trong bộ nhớ được đọc từ đó, ghi vào đầu journal mới
+    private static volatile DataFiles.Signature base;
+    // Dấu của data.csv mà compact đang ghi, chưa thay file cũ (giữ bởi appendLock)
+    private static DataFiles.Signature pendingBase;
+
+    static {
+        PersistenceService.schedulePeriodic(CourseJournal::compactIfNeeded, COMPACT_INTERVAL_S);
+    }
+
+    public static void recordGrade(Course c, String grade) {
+        append("G", c, grade == null ? "" : grade);
+    }
+
+    public static void recordCredits(Course c, int credits) {
+        append("C", c, String.valueOf(credits));
+    }
+
+    public static void recordMove(Course c, String newSemester) {
+        append("M", c, newSemester);
+    }
+
+    public static void recordRemove(Course c) {
+        append("R", c, "");
+    }
+
+    private static void append(String op, Course c, String value) {
+        synchronized (appendLock) {
+            appendLine(buffer, op, c, value);
+        }
+        PersistenceService.schedule("journal", CourseJournal::sync);
+    }
+
+    /**
+     * Ghi một dòng journal cho môn c (trước khi thay đổi được áp vào c) vào out.
+     */
+    static void appendLine(StringBuilder out, String op, Course c, String value) {
+        int duplicate = AttemptIndex.duplicatesBefore(c);
+        out.append(op).append('|').append(c.getSemester()).append('|')
+                .append(c.getCode()).append('|').append(value);
+        if (!c.getStudentId().isEmpty() || duplicate > 0) out.append('|').append(c.getStudentId());
+        if (duplicate > 0) out.append('|').append(duplicate);
+        out.append('\n');
+    }
+
+    /**
+     * Ghi các bản ghi đang chờ trong bộ đệm vào journal và fsync.
+     */
+    public static void sync() {
+        synchronized (appendLock) {
+            try {
+                syncLocked();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Ghi nốt bộ đệm rồi đóng journal (khi thoát app); lần ghi sau sẽ mở lại.
+     */
+    public static void close() {
+        synchronized (appendLock) {
+            try {
+                syncLocked();
+                closeLocked();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void syncLocked() throws IOException {
+        if (buffer.isEmpty()) return;
+        openLocked();
+        if (channel.size() == 0) {
+            if (pendingBase != null) buffer.insert(0, BASE_PREFIX + pendingBase.format() + "\n");
+            if (base != null) buffer.insert(0, BASE_PREFIX + base.format() + "\n");
+        }
+        writeLocked(buffer.toString());
+        buffer.setLength(0);
+        if (channel.size() >= COMPACT_THRESHOLD_BYTES) {
+            PersistenceService.schedule("compact", CourseJournal::compactIfNeeded);
+        }
+    }
+
+    private static void openLocked() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(DataFiles.journal(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static void writeLocked(String text) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) channel.write(bytes);
+        channel.force(false);
+    }
+
+    private static void closeLocked() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Đọc file gốc rồi áp dụng journal lên trên. Giữ compactLock để không đọc đúng lúc
+     * file gốc đang được thay bởi bản đã compact.
+     */
+    static List<Course> loadWithJournal() throws IOException {
+        return loadWithJournal(progress -> { });
+    }
+
+    static List<Course> loadWithJournal(DoubleConsumer progress) throws IOException {
+        synchronized (compactLock) {
+            sync();
+            DataFiles.Signature source = DataFiles.Signature.read(ExcelReader.resolveSource());
+            List<Course> courses = CourseService.loadBase(progress);
+            if (appliesTo(DataFiles.rotatedJournal(), source)) replay(courses, DataFiles.rotatedJournal());
+            if (appliesTo(DataFiles.journal(), source)) {
+                replay(courses, DataFiles.journal());
+            } else {
+                setAsideJournal();
+            }
+            base = source;
+            return courses;
+        }
+    }
+
+    /**
+     * true nếu journal (nếu có) được ghi trên file gốc có dấu source, hoặc là bản cũ không có dòng #base.
+     */
+    static boolean appliesTo(Path journal, DataFiles.Signature source) throws IOException {
+        if (!Files.exists(journal)) return false;
+        List<DataFiles.Signature> bases = bases(journal);
+        return bases.isEmpty() || bases.contains(source);
+    }
+
+    private static List<DataFiles.Signature> bases(Path journal) throws IOException {
+        List<DataFiles.Signature> bases = new ArrayList<>();
+        for (String line : Files.readAllLines(journal, StandardCharsets.UTF_8)) {
+            if (line.startsWith(BASE_PREFIX)) bases.add(DataFiles.Signature.parse(line.substring(BASE_PREFIX.length())));
+        }
+        return bases;
+    }
+
+    // File gốc đã bị sửa từ bên ngoài sau các bản ghi này: giữ lại journal để tra cứu nhưng
+    // không replay nữa, bản ghi mới vào journal mới
+    private static void setAsideJournal() throws IOException {
+        synchronized (appendLock) {
+            if (!Files.exists(DataFiles.journal())) return;
+            closeLocked();
+            Files.move(DataFiles.journal(), DataFiles.staleJournal(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Ghi dấu file gốc mới khi compact, trước khi file đó thay file cũ: dữ liệu trong bộ nhớ giờ
+     * ứng với file đó, và các bản ghi trong journal hiện tại áp lên nó cũng như áp lên file cũ
+     * + journal đã tách. App dừng trước khi rename thì dấu này chỉ thừa, file cũ vẫn khớp dấu đầu.
+     */
+    private static void rebase(DataFiles.Signature source) throws IOException {
+        synchronized (appendLock) {
+            pendingBase = source;
+            if (!Files.exists(DataFiles.journal())) return;
+            syncLocked();
+            openLocked();
+            writeLocked(BASE_PREFIX + source.format() + "\n");
+        }
+    }
+
+    static void replay(List<Course> courses, Path journal) {
+        if (!Files.exists(journal)) return;
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(journal, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (lines.isEmpty()) return;
+
+        // Index theo (student, semester, code) -> vị trí các dòng trong courses theo thứ tự tăng dần.
+        // Môn bị xóa chỉ được loại khỏi courses ở cuối nên vị trí không đổi trong lúc replay
+        Map<String, List<Integer>> byKey = new HashMap<>();
+        for (int i = 0; i < courses.size(); i++) {
+            Course c = courses.get(i);
+            byKey.computeIfAbsent(key(c.getStudentId(), c.getSemester(), c.getCode()), k -> new ArrayList<>(1)).add(i);
+        }
+        Set<Course> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (String line : lines) {
+            // Dòng cuối có thể bị ghi dở nếu app dừng đột ngột
+            String[] parts = line.split("\\|", -1);
+            if (parts.length < 4 || parts.length > 6) continue;
+            String student = parts.length >= 5 ? parts[4] : "";
+            int duplicate;
+            try {
+                duplicate = parts.length == 6 ? Integer.parseInt(parts[5]) : 0;
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            String key = key(student, parts[1], parts[2]);
+            List<Integer> rows = byKey.get(key);
+            if (rows == null || duplicate < 0 || duplicate >= rows.size()) continue;
+            Course c = courses.get(rows.get(duplicate));
+            switch (parts[0]) {
+                case "G" -> c.setGrade(parts[3]);
+                case "C" -> {
+                    try {
+                        c.setCredits(Integer.parseInt(parts[3]));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+                case "M" -> {
+                    int row = rows.remove(duplicate);
+                    if (rows.isEmpty()) byKey.remove(key);
+                    c.setSemester(parts[3]);
+                    List<Integer> target = byKey.computeIfAbsent(key(student, parts[3], parts[2]), k -> new ArrayList<>(1));
+                    // Giữ thứ tự theo vị trí trong danh sách, như số n được tính khi ghi
+                    target.add(-Collections.binarySearch(target, row) - 1, row);
+                }
+                case "R" -> {
+                    rows.remove(duplicate);
+                    if (rows.isEmpty()) byKey.remove(key);
+                    removed.add(c);
+                }
+                default -> { }
+            }
+        }
+        if (!removed.isEmpty()) courses.removeIf(removed::contains);
+    }
+
+    private static String key(String student, String semester, String code) {
+        return student + "|" + semester + "|" + code;
+    }
+
+    /**
+     * Gộp journal vào file gốc: tách journal hiện tại ra (các bản ghi mới sẽ vào journal mới),
+     * đọc file gốc + journal đã tách, ghi lại data.csv rồi xóa journal đã tách.
+     * Nếu không đọc được file gốc, hoặc file có dòng lỗi bị bỏ qua, thì không compact: data.csv
+     * giữ nguyên và journal đã tách vẫn được replay, lần compact sau thử lại.
+     * Journal đã tách có dòng #base nên có thể dừng ở bất kỳ bước nào: khi data.csv đã được
+     * thay (dấu không còn khớp) thì journal đó không bao giờ được replay lần thứ hai.
+     */
+    public static void compactIfNeeded() {
+        synchronized (compactLock) {
+            try {
+                if (!Files.exists(DataFiles.rotatedJournal())) {
+                    synchronized (appendLock) {
+                        syncLocked();
+                        if (!Files.exists(DataFiles.journal()) || Files.size(DataFiles.journal()) == 0) return;
+                        // Journal bản cũ chưa có dòng #base: nó đã được replay lên file gốc hiện tại
+                        if (base != null && bases(DataFiles.journal()).isEmpty()) {
+                            openLocked();
+                            writeLocked(BASE_PREFIX + base.format() + "\n");
+                        }
+                        closeLocked();
+                        Files.move(DataFiles.journal(), DataFiles.rotatedJournal(), StandardCopyOption.ATOMIC_MOVE);
+                    }
+                }
+
+                DataFiles.Signature source = DataFiles.Signature.read(ExcelReader.resolveSource());
+                if (source == null) return;
+                if (!appliesTo(DataFiles.rotatedJournal(), source)) {
+                    // data.csv đã là bản compact (app dừng trước khi xóa journal đã tách)
+                    // hoặc đã bị sửa từ bên ngoài: không replay lại, chỉ dọn journal
+                    Files.delete(DataFiles.rotatedJournal());
+                    return;
+                }
+                List<Course> courses = CourseService.loadCompleteBase();
+                if (courses == null) return;
+                replay(courses, DataFiles.rotatedJournal());
+                try {
+                    CourseService.writeCsv(courses, CourseJournal::rebase);
+                    synchronized (appendLock) {
+                        base = pendingBase;
+                    }
+                } finally {
+                    synchronized (appendLock) {
+                        pendingBase = null;
+                    }
+                }
+                Files.delete(DataFiles.rotatedJournal());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
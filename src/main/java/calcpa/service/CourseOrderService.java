@@ -4,6 +4,7 @@ import calcpa.model.Course;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
@@ -52,26 +53,31 @@ public class CourseOrderService {
     }
     
     /**
-     * Lưu thứ tự tùy chỉnh ra file
+     * Lưu thứ tự tùy chỉnh ra file. Nội dung được chụp lại ngay trên luồng gọi,
+     * còn việc ghi file (gộp các lần lưu liên tiếp) chạy trên luồng ghi nền.
      */
     public static void saveOrder() {
-        try (PrintWriter pw = new PrintWriter(
-                new OutputStreamWriter(new FileOutputStream(ORDER_FILE), StandardCharsets.UTF_8))) {
-            pw.println("# Thứ tự hiển thị môn học: semester|courseCode|displayOrder");
-            
-            // Sắp xếp theo semester để dễ đọc
-            List<String> semesters = new ArrayList<>(orderMap.keySet());
-            Collections.sort(semesters);
-            
-            for (String semester : semesters) {
-                Map<String, Integer> courseOrders = orderMap.get(semester);
-                for (Map.Entry<String, Integer> entry : courseOrders.entrySet()) {
-                    pw.println(semester + "|" + entry.getKey() + "|" + entry.getValue());
-                }
+        List<String> lines = new ArrayList<>();
+        lines.add("# Thứ tự hiển thị môn học: semester|courseCode|displayOrder");
+
+        // Sắp xếp theo semester để dễ đọc
+        List<String> semesters = new ArrayList<>(orderMap.keySet());
+        Collections.sort(semesters);
+
+        for (String semester : semesters) {
+            Map<String, Integer> courseOrders = orderMap.get(semester);
+            for (Map.Entry<String, Integer> entry : courseOrders.entrySet()) {
+                lines.add(semester + "|" + entry.getKey() + "|" + entry.getValue());
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
+
+        PersistenceService.schedule("order", () -> {
+            try {
+                PersistenceService.writeAtomically(Paths.get(ORDER_FILE), pw -> lines.forEach(pw::println));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
     }
     
     /**
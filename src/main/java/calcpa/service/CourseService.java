@@ -1,21 +1,175 @@
 package calcpa.service;
 
+import calcpa.CourseSnapshot;
+import calcpa.DataFiles;
 import calcpa.ExcelReader;
 import calcpa.model.Course;
 
-import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 public class CourseService {
     private static final List<Course> courses = new ArrayList<>();
+    private static final List<Consumer<CourseDelta>> changeListeners = new CopyOnWriteArrayList<>();
 
-    public static void loadData() {
+    // Tăng mỗi khi dữ liệu trong bộ nhớ thay đổi
+    private static volatile long version;
+    private static volatile Snapshot snapshot = new Snapshot(0, List.of());
+
+    // Dấu của data.csv sau lần ghi gần nhất của chính app
+    private static volatile DataFiles.Signature lastWrittenSignature;
+
+    public static void loadData() throws IOException {
+        setData(readData(progress -> { }));
+    }
+
+    /**
+     * Đọc dữ liệu (snapshot hoặc file gốc + journal) mà không đụng tới danh sách trong bộ nhớ,
+     * nên có thể gọi ở luồng nền. progress nhận tỉ lệ đã đọc trong khoảng 0..1.
+     * Ném IOException nếu không đọc được file gốc.
+     */
+    public static List<Course> readData(DoubleConsumer progress) throws IOException {
+        return CourseJournal.loadWithJournal(progress);
+    }
+
+    /**
+     * Thay toàn bộ dữ liệu trong bộ nhớ bằng danh sách đã đọc (gọi trên luồng UI).
+     */
+    public static void setData(List<Course> loaded) {
         courses.clear();
-        courses.addAll(ExcelReader.readCourses());
+        courses.addAll(loaded);
+        AttemptIndex.rebuild(courses);
+        version++;
+        snapshot = new Snapshot(version, List.copyOf(courses));
+    }
+
+    public static long getVersion() {
+        return version;
+    }
+
+    /**
+     * Bản chụp bất biến của danh sách môn tại một version, đọc được từ mọi luồng. Các đối tượng
+     * Course vẫn có thể bị sửa trên luồng UI sau đó, khi ấy version đã tăng nên kết quả tính
+     * trên bản chụp cũ cần được bỏ.
+     */
+    public record Snapshot(long version, List<Course> courses) {
+    }
+
+    public static Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Đọc dữ liệu gốc (chưa áp journal): ưu tiên snapshot nhị phân,
+     * chỉ parse lại file text khi snapshot đã cũ. Lỗi đọc file được ném ra, không có
+     * snapshot nào được ghi từ lần đọc hỏng.
+     */
+    static List<Course> loadBase(DoubleConsumer progress) throws IOException {
+        List<Course> loaded = CourseSnapshot.load(progress);
+        if (loaded == null) {
+            Path source = ExcelReader.resolveSource();
+            // Lấy dấu trước khi parse, xem CourseSnapshot.write
+            DataFiles.Signature signature = DataFiles.Signature.read(source);
+            loaded = ExcelReader.readCourses(source, progress);
+            // Dòng lỗi không có trong danh sách; chỉ ghi snapshot khi file được đọc trọn vẹn để
+            // compact (ghi lại data.csv từ danh sách này) không bao giờ xóa mất các dòng đó
+            if (!ExcelReader.getLastReport().hasErrors()) CourseSnapshot.write(loaded, signature);
+        }
+        return loaded;
+    }
+
+    /**
+     * Như loadBase nhưng trả về null nếu file gốc có dòng lỗi bị bỏ qua: ghi đè data.csv bằng
+     * danh sách đó sẽ xóa các dòng người dùng còn sửa lại được.
+     */
+    static List<Course> loadCompleteBase() throws IOException {
+        // Snapshot chỉ được ghi cho file đọc trọn vẹn (hoặc do chính writeCsv ghi)
+        List<Course> loaded = CourseSnapshot.load(progress -> { });
+        if (loaded != null) return loaded;
+        Path source = ExcelReader.resolveSource();
+        DataFiles.Signature signature = DataFiles.Signature.read(source);
+        loaded = ExcelReader.readCourses(source, progress -> { });
+        if (ExcelReader.getLastReport().hasErrors()) return null;
+        CourseSnapshot.write(loaded, signature);
+        return loaded;
+    }
+
+    /**
+     * Đăng ký nhận phần thay đổi khi dữ liệu được sửa trong app hoặc cập nhật từ file bên ngoài.
+     */
+    public static void addChangeListener(Consumer<CourseDelta> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * So sánh dữ liệu mới đọc từ file với danh sách trong bộ nhớ theo (student, semester, code),
+     * cập nhật tại chỗ các môn thay đổi (giữ nguyên đối tượng Course) rồi báo cho listener.
+     * Phải gọi trên luồng sở hữu danh sách (luồng UI).
+     *
+     * @param readAtVersion version lúc bắt đầu đọc file; nếu dữ liệu đã bị sửa trong app
+     *                      kể từ đó thì fresh không còn đúng và trả về false để đọc lại
+     */
+    public static boolean applyExternalChange(List<Course> fresh, long readAtVersion) {
+        if (readAtVersion != version) return false;
+
+        Map<String, Deque<Course>> current = new HashMap<>();
+        for (Course c : courses) {
+            current.computeIfAbsent(key(c), k -> new ArrayDeque<>()).add(c);
+        }
+
+        List<Course> added = new ArrayList<>();
+        List<Course> changed = new ArrayList<>();
+        for (Course f : fresh) {
+            Deque<Course> candidates = current.get(key(f));
+            Course c = candidates == null ? null : candidates.poll();
+            if (c == null) {
+                added.add(f);
+            } else if (!Objects.equals(c.getName(), f.getName()) || c.getCredits() != f.getCredits()
+                    || !Objects.equals(c.getGrade(), f.getGrade())) {
+                c.setName(f.getName());
+                c.setCredits(f.getCredits());
+                c.setGrade(f.getGrade());
+                changed.add(c);
+            }
+        }
+
+        List<Course> removed = new ArrayList<>();
+        for (Deque<Course> left : current.values()) removed.addAll(left);
+
+        CourseDelta delta = new CourseDelta(added, removed, changed);
+        if (delta.isEmpty()) return true;
+
+        if (!removed.isEmpty()) {
+            Set<Course> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+            gone.addAll(removed);
+            courses.removeIf(gone::contains);
+        }
+        courses.addAll(added);
+        publish(delta);
+        return true;
+    }
+
+    // Tăng version rồi báo phần thay đổi: các chỉ mục và cache dùng chung cập nhật trước,
+    // sau đó tới các trang
+    private static void publish(CourseDelta delta) {
+        long before = version;
+        AttemptIndex.apply(delta);
+        version++;
+        // Chỉ sửa / đổi kỳ thì danh sách không đổi, dùng lại bản chụp cũ
+        boolean structural = !delta.added().isEmpty() || !delta.removed().isEmpty();
+        snapshot = new Snapshot(version, structural ? List.copyOf(courses) : snapshot.courses());
+        GpaCache.onCoursesChanged(delta, before, version);
+        SubjectIndex.onCoursesChanged(delta, before, version);
+        for (Consumer<CourseDelta> listener : changeListeners) listener.accept(delta);
+    }
+
+    private static String key(Course c) {
+        return c.getStudentId() + "|" + c.getSemester() + "|" + c.getCode();
     }
 
     public static List<Course> getAllCourses() {
@@ -23,18 +177,67 @@ public class CourseService {
     }
 
     public static void removeCourse(Course c) {
+        CourseJournal.recordRemove(c);
         courses.remove(c);
+        publish(new CourseDelta(List.of(), List.of(c), List.of()));
     }
 
     public static void changeSemester(Course c, String newSemester){
+        CourseJournal.recordMove(c, newSemester);
+        // Bản sao giữ kỳ cũ để listener biết kỳ nào mất môn
+        Course old = new Course(c.getCode(), c.getName(), c.getCredits(), c.getGrade(), c.getSemester(), c.getStudentId());
         c.setSemester(newSemester);
+        publish(new CourseDelta(List.of(c), List.of(old), List.of()));
+    }
+
+    public static void setGrade(Course c, String grade) {
+        CourseJournal.recordGrade(c, grade);
+        c.setGrade(grade);
+        publish(new CourseDelta(List.of(), List.of(), List.of(c)));
     }
 
+    public static void setCredits(Course c, int credits) {
+        CourseJournal.recordCredits(c, credits);
+        c.setCredits(credits);
+        publish(new CourseDelta(List.of(), List.of(), List.of(c)));
+    }
+
+    /**
+     * Lưu các thay đổi: chỉ đặt lịch ghi journal trên luồng ghi nền (không chặn luồng UI),
+     * việc ghi lại data.csv do CourseJournal compact định kỳ.
+     */
     public static void saveData() {
-        try (PrintWriter pw = new PrintWriter(
-                new OutputStreamWriter( new FileOutputStream("src/main/resources/data.csv"),
-                        StandardCharsets.UTF_8 ))) {
-            pw.println("semester,code,name,credits,grade");
+        PersistenceService.schedule("journal", CourseJournal::sync);
+    }
+
+    /**
+     * Ghi toàn bộ danh sách ra data.csv (dùng khi compact journal), qua file tạm + rename.
+     * beforeReplace nhận dấu mà data.csv sẽ có (rename giữ nguyên kích thước, thời điểm sửa
+     * và fileKey) trước khi file tạm thay file cũ, để caller ghi lại dấu đó trước.
+     */
+    static void writeCsv(List<Course> courses, PersistenceService.IOConsumer<DataFiles.Signature> beforeReplace)
+            throws IOException {
+        Path path = DataFiles.csv();
+        writeCsv(path, courses, tmp -> {
+            DataFiles.Signature tmpSignature = DataFiles.Signature.read(tmp);
+            if (tmpSignature == null) throw new IOException("Không đọc được file tạm " + tmp);
+            lastWrittenSignature = tmpSignature.withName(path.getFileName().toString());
+            beforeReplace.accept(lastWrittenSignature);
+        });
+        CourseSnapshot.write(courses, lastWrittenSignature);
+    }
+
+    static void writeCsv(Path path, List<Course> courses) throws IOException {
+        writeCsv(path, courses, tmp -> { });
+    }
+
+    private static void writeCsv(Path path, List<Course> courses, PersistenceService.IOConsumer<Path> beforeReplace)
+            throws IOException {
+        // Cột student chỉ ghi khi dữ liệu có nhiều sinh viên
+        boolean withStudent = courses.stream().anyMatch(c -> !c.getStudentId().isEmpty());
+        PersistenceService.writeAtomically(path, pw -> {
+            pw.println(withStudent ? "semester,code,name,credits,grade,student" : "semester,code,name,credits,grade");
+            if (courses.isEmpty()) return;
             String s=courses.getFirst().getSemester();
             String ss;
             for (Course c : courses){
@@ -45,6 +248,14 @@ public class CourseService {
                 }
                 pw.println(c.toCsvLine());
             }
-        } catch (Exception e) { e.printStackTrace(); }
+        }, beforeReplace);
+    }
+
+    /**
+     * true nếu file dữ liệu hiện tại chính là file app vừa ghi (không phải sửa từ bên ngoài).
+     */
+    static boolean isOwnWrite() {
+        DataFiles.Signature current = DataFiles.Signature.read(ExcelReader.resolveSource());
+        return current != null && current.equals(lastWrittenSignature);
     }
 }
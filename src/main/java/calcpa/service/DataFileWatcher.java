@@ -0,0 +1,109 @@
+package calcpa.service;
+
+import calcpa.DataFiles;
+import calcpa.model.Course;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Theo dõi data.csv / data.xlsx bằng WatchService. Khi file bị sửa từ bên ngoài app,
+ * đọc lại dữ liệu trên luồng theo dõi rồi chuyển sang applyOn (luồng UI) để
+ * CourseService so sánh và phát đi phần thay đổi.
+ */
+public class DataFileWatcher {
+    private static final Set<String> WATCHED_FILES = Set.of("data.csv", "data.xlsx");
+    // Chờ file yên lặng trong khoảng này rồi mới đọc, tránh đọc file đang ghi dở
+    private static final long DEBOUNCE_MS = 300;
+
+    private static WatchService watchService;
+    private static Thread thread;
+
+    public static synchronized void start(Executor applyOn) {
+        if (thread != null) return;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            DataFiles.directory().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        WatchService ws = watchService;
+        thread = new Thread(() -> watchLoop(ws, applyOn), "data-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static synchronized void stop() {
+        if (thread == null) return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        thread = null;
+        watchService = null;
+    }
+
+    private static void watchLoop(WatchService ws, Executor applyOn) {
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                boolean relevant = drain(key);
+                if (!relevant) continue;
+
+                // Gộp các sự kiện liên tiếp của cùng một lần ghi
+                WatchKey next;
+                while ((next = ws.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) drain(next);
+
+                // Bỏ qua lần ghi do chính app thực hiện (compact journal)
+                if (CourseService.isOwnWrite()) continue;
+
+                reload(applyOn);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Dừng theo dõi
+        }
+    }
+
+    /**
+     * Đọc lại file + journal rồi áp dụng trên applyOn. Nếu trong lúc đọc người dùng đã sửa
+     * dữ liệu trong app thì kết quả bị bỏ và đọc lại trên một luồng nền mới.
+     * Journal ghi trên bản file trước lần sửa bên ngoài không được replay (bản sửa bên ngoài
+     * thắng), xem CourseJournal.
+     */
+    private static void reload(Executor applyOn) {
+        long version = CourseService.getVersion();
+        List<Course> fresh;
+        try {
+            fresh = CourseJournal.loadWithJournal();
+        } catch (IOException e) {
+            // File đang được ghi dở hoặc hỏng: giữ dữ liệu trong bộ nhớ, chờ lần sửa sau
+            e.printStackTrace();
+            return;
+        }
+        applyOn.execute(() -> {
+            if (!CourseService.applyExternalChange(fresh, version)) {
+                Thread retry = new Thread(() -> reload(applyOn), "data-file-reload");
+                retry.setDaemon(true);
+                retry.start();
+            }
+        });
+    }
+
+    private static boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path p && WATCHED_FILES.contains(p.getFileName().toString())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+}
@@ -0,0 +1,349 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+import calcpa.model.CourseStore;
+
+import java.util.*;
+
+/**
+ * Bộ nhớ đệm dùng chung cho các số liệu dashboard: môn đã group theo kỳ, GPA từng kỳ,
+ * CPA tích lũy và tín chỉ tích lũy đến từng kỳ.
+ *
+ * Mỗi số liệu được tính một lần cho mọi kỳ (trên một CourseStore dùng chung) và gắn với
+ * version dữ liệu của CourseService (tăng sau mọi thay đổi) cùng thang điểm đang dùng. Khi
+ * người dùng chọn/bỏ chọn kỳ, kết quả chỉ là lọc lại các map đã có. CPA và tín chỉ tích lũy
+ * đến một kỳ không phụ thuộc các kỳ được chọn, nên lọc cho kết quả giống hệt gọi GpaService
+ * với tập kỳ đó.
+ *
+ * Khi chỉ có điểm / tín chỉ của vài môn bị sửa, CourseService gọi onCoursesChanged trước khi
+ * báo cho các trang: cache vá dòng tương ứng trong store, tính lại GPA của kỳ chứa môn và
+ * cộng lại phần đóng góp của mã môn đó vào CPA / tín chỉ tích lũy từ kỳ đó trở đi. Chi phí
+ * tỉ lệ với số môn của kỳ và số kỳ, không phụ thuộc tổng số môn. Thêm/xóa môn thì tính lại.
+ *
+ * Dựng từ bản chụp bất biến CourseService.snapshot() nên gọi được từ luồng tính nền; mọi
+ * truy cập đi qua khóa của lớp.
+ */
+public class GpaCache {
+    private static long hits;
+    private static long misses;
+    private static long patches;
+
+    private static long version = -1;
+    private static GradingScale scale;
+    private static List<Course> source = List.of();
+    private static Map<String, List<Course>> grouped;
+    private static CourseStore store;
+    private static Map<String, Integer> semesterIds;
+
+    // Theo id kỳ của store: tổng điểm x tín chỉ / tổng tín chỉ của riêng kỳ (GPA)
+    private static double[] semPoints;
+    private static int[] semCredits;
+    // Tổng tích lũy đến kỳ (CPA) và tín chỉ tích lũy đến kỳ
+    private static double[] cumPoints;
+    private static int[] cumCredits;
+    private static int[] cumPassed;
+
+    private static Map<String, Double> gpa;
+    private static Map<String, Double> cpa;
+    private static Map<String, Integer> credits;
+
+    /**
+     * Số lần tra cứu trúng / phải tính lại kể từ khi chạy app, và số lần vá theo môn bị sửa.
+     */
+    public record Stats(long hits, long misses, long patches) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("GpaCache: %d hit, %d miss (%.0f%% hit), %d lần vá",
+                    hits, misses, hitRate() * 100, patches);
+        }
+    }
+
+    public static synchronized Stats stats() {
+        return new Stats(hits, misses, patches);
+    }
+
+    /**
+     * Môn học đã group theo kỳ (thứ tự kỳ tăng dần). Chỉ đọc: các trang dùng chung map này.
+     */
+    public static synchronized Map<String, List<Course>> grouped() {
+        validate();
+        if (grouped == null) misses++;
+        else hits++;
+        return groupedMap();
+    }
+
+    /**
+     * GPA của các kỳ được chọn, theo thứ tự kỳ.
+     */
+    public static synchronized Map<String, Double> gpaBySemester(Set<String> selectedSemesters) {
+        return select(gpaMap(), selectedSemesters);
+    }
+
+    /**
+     * CPA tích lũy đến từng kỳ được chọn, theo thứ tự kỳ.
+     */
+    public static synchronized Map<String, Double> cpaBySemester(Set<String> selectedSemesters) {
+        return select(cpaMap(), selectedSemesters);
+    }
+
+    /**
+     * Tín chỉ tích lũy đến từng kỳ được chọn, theo thứ tự kỳ.
+     */
+    public static synchronized Map<String, Integer> cumulativeCreditsBySemester(Set<String> selectedSemesters) {
+        return select(creditsMap(), selectedSemesters);
+    }
+
+    public static synchronized double gpa(String semester) {
+        return gpaMap().getOrDefault(semester, 0.0);
+    }
+
+    public static synchronized double cpa(String semester) {
+        return cpaMap().getOrDefault(semester, 0.0);
+    }
+
+    /**
+     * Tổng tín chỉ các môn (có mã) học trong kỳ.
+     */
+    public static synchronized int semesterCredits(String semester) {
+        validate();
+        Integer s = semesterId(semester);
+        if (s == null) return 0;
+        int total = 0;
+        int end = store.semesterEnd(s);
+        for (int row = store.semesterStart(s); row < end; row++) {
+            if (store.code(store.codeId(row)) != null) total += store.credits(row);
+        }
+        return total;
+    }
+
+    /**
+     * Tín chỉ học mới / học lại trong kỳ: một môn là học lại nếu mã của nó đã xuất hiện ở một
+     * kỳ được chọn trước đó (hoặc trước nó trong cùng kỳ). Kết quả {mới, học lại}.
+     */
+    public static synchronized int[] newAndRepeatCredits(String semester, Set<String> selectedSemesters) {
+        validate();
+        int[] result = new int[2];
+        Integer s = semesterId(semester);
+        if (s == null) return result;
+        int end = store.semesterEnd(s);
+        for (int row = store.semesterStart(s); row < end; row++) {
+            int code = store.codeId(row);
+            if (store.code(code) == null) continue;
+            // Lịch sử học lấy từ chính store (dựng từ bản chụp, khóa bởi cache) chứ không từ
+            // AttemptIndex: chỉ mục đó được luồng UI sửa trong lúc hàm này chạy ở luồng nền
+            boolean repeat = false;
+            for (int i = store.codeRowStart(code); i < store.codeRowEnd(code); i++) {
+                int other = store.codeRow(i);
+                if (other >= row) break;
+                if (selectedSemesters.contains(store.semester(store.semesterOf(other)))) {
+                    repeat = true;
+                    break;
+                }
+            }
+            result[repeat ? 1 : 0] += store.credits(row);
+        }
+        return result;
+    }
+
+    /**
+     * Cập nhật cache theo phần thay đổi vừa áp vào danh sách môn (version từ fromVersion lên
+     * toVersion). Chỉ vá được khi cache đang khớp fromVersion và không có môn thêm/xóa;
+     * ngược lại để lần tra cứu sau tính lại.
+     */
+    static synchronized void onCoursesChanged(CourseDelta delta, long fromVersion, long toVersion) {
+        if (version != fromVersion || scale != GradingScale.active() || grouped == null) return;
+        if (!delta.added().isEmpty() || !delta.removed().isEmpty() || !patch(delta.changed())) {
+            // Để validate() bỏ toàn bộ kết quả ở lần tra cứu sau
+            version = -1;
+            return;
+        }
+        version = toVersion;
+        patches++;
+    }
+
+    private static boolean patch(List<Course> changed) {
+        if (store == null) return true;
+        GpaService.RunningBest cpaOne = cumPoints == null ? null : new GpaService.RunningBest(store, scale, false);
+        GpaService.RunningBest creditsOne = cumPassed == null ? null : new GpaService.RunningBest(store, scale, true);
+        int from = Integer.MAX_VALUE;
+        double[] totals = new double[2];
+        for (Course c : changed) {
+            Integer s = semesterId(c.getSemester());
+            int row = s == null ? -1 : store.rowOf(c, s);
+            if (row < 0) return false;
+            int code = store.codeId(row);
+            applyCode(code, -1, cpaOne, creditsOne);
+            if (!store.update(row, c.getCredits(), c.getGradeCode())) return false;
+            applyCode(code, 1, cpaOne, creditsOne);
+            if (semPoints != null) {
+                GpaService.semesterTotals(store, s, scale, totals);
+                semPoints[s] = totals[0];
+                semCredits[s] = (int) totals[1];
+                gpa.put(store.semester(s), average(semPoints[s], semCredits[s]));
+            }
+            from = Math.min(from, s);
+        }
+        for (int k = from; k < store.semesterCount(); k++) {
+            if (cumPoints != null) cpa.put(store.semester(k), average(cumPoints[k], cumCredits[k]));
+            if (cumPassed != null) credits.put(store.semester(k), cumPassed[k]);
+        }
+        return true;
+    }
+
+    // Cộng (sign = 1) hoặc trừ (sign = -1) phần đóng góp của một mã môn vào các tổng tích lũy:
+    // lần học tốt nhất của mã đó tính đến từng kỳ, theo đúng quy tắc của GpaService
+    private static void applyCode(int code, int sign, GpaService.RunningBest cpaOne, GpaService.RunningBest creditsOne) {
+        if (cpaOne == null && creditsOne == null) return;
+        if (cpaOne != null) cpaOne.resetCode(code);
+        if (creditsOne != null) creditsOne.resetCode(code);
+        int end = store.codeRowEnd(code);
+        int i = store.codeRowStart(code);
+        while (i < end) {
+            int semester = store.semesterOf(store.codeRow(i));
+            int next = store.semesterCount();
+            for (; i < end; i++) {
+                int row = store.codeRow(i);
+                int rowSemester = store.semesterOf(row);
+                if (rowSemester != semester) {
+                    next = rowSemester;
+                    break;
+                }
+                if (cpaOne != null) cpaOne.add(row);
+                if (creditsOne != null) creditsOne.add(row);
+            }
+            for (int k = semester; k < next; k++) {
+                if (cpaOne != null) {
+                    cumPoints[k] += sign * cpaOne.totalPoints();
+                    cumCredits[k] += sign * cpaOne.totalCredits();
+                }
+                if (creditsOne != null) cumPassed[k] += sign * creditsOne.passedCredits();
+            }
+        }
+    }
+
+    private static Map<String, List<Course>> groupedMap() {
+        if (grouped == null) {
+            Map<String, List<Course>> map = new TreeMap<>();
+            GpaService.groupBySemester(source)
+                    .forEach((semester, list) -> map.put(semester, Collections.unmodifiableList(list)));
+            grouped = Collections.unmodifiableMap(map);
+        }
+        return grouped;
+    }
+
+    private static CourseStore store() {
+        if (store == null) {
+            store = CourseStore.of(groupedMap());
+            semesterIds = new HashMap<>();
+            for (int s = 0; s < store.semesterCount(); s++) semesterIds.put(store.semester(s), s);
+        }
+        return store;
+    }
+
+    private static Integer semesterId(String semester) {
+        store();
+        return semesterIds.get(semester);
+    }
+
+    private static Map<String, Double> gpaMap() {
+        validate();
+        if (gpa == null) {
+            misses++;
+            CourseStore all = store();
+            int count = all.semesterCount();
+            semPoints = new double[count];
+            semCredits = new int[count];
+            gpa = new LinkedHashMap<>();
+            double[] totals = new double[2];
+            for (int s = 0; s < count; s++) {
+                GpaService.semesterTotals(all, s, scale, totals);
+                semPoints[s] = totals[0];
+                semCredits[s] = (int) totals[1];
+                gpa.put(all.semester(s), average(semPoints[s], semCredits[s]));
+            }
+        } else {
+            hits++;
+        }
+        return gpa;
+    }
+
+    private static Map<String, Double> cpaMap() {
+        validate();
+        if (cpa == null) {
+            misses++;
+            CourseStore all = store();
+            int count = all.semesterCount();
+            cumPoints = new double[count];
+            cumCredits = new int[count];
+            cpa = new LinkedHashMap<>();
+            GpaService.RunningBest best = new GpaService.RunningBest(all, scale, false);
+            for (int s = 0; s < count; s++) {
+                best.addSemester(s);
+                cumPoints[s] = best.totalPoints();
+                cumCredits[s] = best.totalCredits();
+                cpa.put(all.semester(s), best.gpa());
+            }
+        } else {
+            hits++;
+        }
+        return cpa;
+    }
+
+    private static Map<String, Integer> creditsMap() {
+        validate();
+        if (credits == null) {
+            misses++;
+            CourseStore all = store();
+            int count = all.semesterCount();
+            cumPassed = new int[count];
+            credits = new LinkedHashMap<>();
+            GpaService.RunningBest best = new GpaService.RunningBest(all, scale, true);
+            for (int s = 0; s < count; s++) {
+                best.addSemester(s);
+                cumPassed[s] = best.passedCredits();
+                credits.put(all.semester(s), cumPassed[s]);
+            }
+        } else {
+            hits++;
+        }
+        return credits;
+    }
+
+    private static double average(double points, int credits) {
+        return credits == 0 ? 0.0 : points / credits;
+    }
+
+    // Bỏ mọi kết quả cũ nếu dữ liệu hoặc thang điểm đã đổi
+    private static void validate() {
+        CourseService.Snapshot snapshot = CourseService.snapshot();
+        GradingScale currentScale = GradingScale.active();
+        if (snapshot.version() == version && currentScale == scale) return;
+        version = snapshot.version();
+        scale = currentScale;
+        source = snapshot.courses();
+        grouped = null;
+        store = null;
+        semesterIds = null;
+        semPoints = null;
+        semCredits = null;
+        cumPoints = null;
+        cumCredits = null;
+        cumPassed = null;
+        gpa = null;
+        cpa = null;
+        credits = null;
+    }
+
+    private static <V> Map<String, V> select(Map<String, V> all, Set<String> selectedSemesters) {
+        Map<String, V> result = new LinkedHashMap<>();
+        for (Map.Entry<String, V> e : all.entrySet()) {
+            if (selectedSemesters.contains(e.getKey())) result.put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+}
@@ -1,44 +1,23 @@
 package calcpa.service;
 
 import calcpa.model.Course;
+import calcpa.model.CourseStore;
 
 import java.util.*;
 
 public class GpaService {
-    private static boolean isIgnoredGrade(String grade) {
-        if (grade == null || grade.isBlank()) return true;
-        grade = grade.trim().toUpperCase();
-        List<String> needToCalGrade= Arrays.asList("A+", "A", "B+", "B", "C+", "C", "D+", "D", "F");
-        return !needToCalGrade.contains(grade);
-    }
-
-    private static boolean isPassedGrade(String grade) {
-        if (isIgnoredGrade(grade)) return false;
-        return toGrade4(grade) > 0.0;
-    }
-
-    private static double toGrade4(String grade) {
-        switch (grade) {
-            case "A+","A":  return 4.0;
-            case "B+": return 3.5;
-            case "B":  return 3.0;
-            case "C+": return 2.5;
-            case "C":  return 2.0;
-            case "D+": return 1.5;
-            case "D":  return 1.0;
-            case "F": return 0.0;
-            default: throw new IllegalArgumentException("Điểm không hợp lệ: " + grade);
-        }
+    public static double calcGpa(List<Course> courses) {
+        return calcGpa(courses, GradingScale.active());
     }
 
-    public static double calcGpa(List<Course> courses) {
+    private static double calcGpa(List<Course> courses, GradingScale scale) {
         if (courses == null || courses.isEmpty()) return 0.0;
         double totalPoints = 0.0;
         int totalCredits = 0;
         for (Course c : courses) {
-            String grade = c.getGrade();
-            if (isIgnoredGrade(grade)) continue;
-            double grade4 = toGrade4(grade);
+            byte grade = c.getGradeCode();
+            if (!scale.isGraded(grade)) continue;
+            double grade4 = scale.points(grade);
             totalPoints += grade4 * c.getCredits();
             totalCredits += c.getCredits();
         }
@@ -51,34 +30,124 @@ public class GpaService {
         return map;
     }
 
-    private static List<Course> normalizeByBestGrade(List<Course> courses) {
-        Map<String, Course> bestByCode = new HashMap<>();
-        for (Course c : courses) {
-            if (isIgnoredGrade(c.getGrade())) continue;
-            String code = c.getCode();
-            double grade4 = toGrade4(c.getGrade());
-            if (!bestByCode.containsKey(code)) bestByCode.put(code, c);
-            else {
-                Course old = bestByCode.get(code);
-                double oldGrade4 = toGrade4(old.getGrade());
-                if (grade4 > oldGrade4) bestByCode.put(code, c);
-            }
-        }
-        return new ArrayList<>(bestByCode.values());
+    /**
+     * CPA tính đến từng kỳ được chọn, duyệt các kỳ đúng một lần: giữ điểm cao nhất của
+     * từng mã môn và tổng điểm / tổng tín chỉ tương ứng; khi học cải thiện được điểm cao hơn
+     * thì trừ phần của lần học cũ và cộng phần của lần mới.
+     * Với thang có điểm là bội của 0.5 (thang 4, thang 10) tổng luôn chính xác, kết quả trùng
+     * với việc chuẩn hóa rồi calcGpa lại toàn bộ danh sách tích lũy.
+     */
+    public static Map<String, Double> calcCpaBySemester( Map<String, List<Course>> grouped, Set<String> selectedSemesters ){
+        return calcCpaBySemester(CourseStore.of(grouped), selectedSemesters);
     }
 
-    public static Map<String, Double> calcCpaBySemester( Map<String, List<Course>> grouped, Set<String> selectedSemesters ){
+    public static Map<String, Double> calcCpaBySemester(CourseStore store, Set<String> selectedSemesters) {
         Map<String, Double> result = new LinkedHashMap<>();
-        List<Course> accumulated = new ArrayList<>();
-        for (String semester : grouped.keySet()) {
-            accumulated.addAll(grouped.get(semester));
+        RunningBest best = new RunningBest(store, GradingScale.active(), false);
+        for (int s = 0; s < store.semesterCount(); s++) {
+            best.addSemester(s);
+            String semester = store.semester(s);
             if (selectedSemesters.contains(semester)) {
-                List<Course> normalized = normalizeByBestGrade(accumulated);
-                result.put(semester, calcGpa(normalized));
+                result.put(semester, best.gpa());
             }
         }
         return result;
     }
+
+    /**
+     * Lần học tốt nhất của từng mã môn tính tới thời điểm hiện tại, kèm các tổng được cập nhật
+     * theo từng dòng thêm vào. Hai điểm số được so theo điểm (points), token đạt / không đạt
+     * theo hạng (GradingScale.rank); lần học trước được giữ nếu bằng nhau, giống
+     * AttemptIndex.Attempts.best() khi các dòng được thêm theo thứ tự kỳ.
+     * Dùng chung với TargetCpaSolver để hai bên chuẩn hóa điểm giống hệt nhau.
+     */
+    static final class RunningBest {
+        private final CourseStore store;
+        private final GradingScale scale;
+        // Cách tính tín chỉ tích lũy: xét cả token đạt/không đạt, bỏ qua môn không có mã
+        private final boolean forCredits;
+        // Dòng đang là lần học tốt nhất của từng mã môn, -1 nếu chưa có
+        private final int[] bestRow;
+        private double totalPoints;
+        private int totalCredits;
+        private int passedCredits;
+
+        RunningBest(CourseStore store, GradingScale scale, boolean forCredits) {
+            this.store = store;
+            this.scale = scale;
+            this.forCredits = forCredits;
+            this.bestRow = new int[store.codeCount()];
+            Arrays.fill(bestRow, -1);
+        }
+
+        void addSemester(int semesterId) {
+            int end = store.semesterEnd(semesterId);
+            for (int row = store.semesterStart(semesterId); row < end; row++) add(row);
+        }
+
+        void add(int row) {
+            byte grade = store.grade(row);
+            if (forCredits ? !scale.countsCredits(grade) : !scale.isGraded(grade)) return;
+            int code = store.codeId(row);
+            if (forCredits && store.isBlankCode(code)) return;
+            double grade4 = scale.points(grade);
+            int credits = store.credits(row);
+            int old = bestRow[code];
+            if (old >= 0) {
+                byte oldGrade = store.grade(old);
+                if (!better(grade, oldGrade)) return;
+                double oldGrade4 = scale.points(oldGrade);
+                int oldCredits = store.credits(old);
+                totalPoints -= oldGrade4 * oldCredits;
+                totalCredits -= oldCredits;
+                if (scale.isPassed(oldGrade)) passedCredits -= oldCredits;
+            }
+            bestRow[code] = row;
+            totalPoints += grade4 * credits;
+            totalCredits += credits;
+            if (scale.isPassed(grade)) passedCredits += credits;
+        }
+
+        private boolean better(byte grade, byte oldGrade) {
+            if (scale.isGraded(grade) && scale.isGraded(oldGrade)) return scale.points(grade) > scale.points(oldGrade);
+            return scale.rank(grade) > scale.rank(oldGrade);
+        }
+
+        double gpa() {
+            return totalCredits == 0 ? 0.0 : totalPoints / totalCredits;
+        }
+
+        double totalPoints() {
+            return totalPoints;
+        }
+
+        int totalCredits() {
+            return totalCredits;
+        }
+
+        /**
+         * Dòng đang là lần học tốt nhất của mã môn, -1 nếu chưa có.
+         */
+        int bestRow(int codeId) {
+            return bestRow[codeId];
+        }
+
+        /**
+         * Quên lần học tốt nhất của mã môn và đưa các tổng về 0, để cộng lại riêng các dòng
+         * của mã đó (phần đóng góp của một mã môn vào CPA / tín chỉ tích lũy).
+         */
+        void resetCode(int codeId) {
+            bestRow[codeId] = -1;
+            totalPoints = 0.0;
+            totalCredits = 0;
+            passedCredits = 0;
+        }
+
+        int passedCredits() {
+            return passedCredits;
+        }
+    }
+
     // =========================================================
 // GPA theo từng kỳ (dùng cho Dashboard)
 // =========================================================
@@ -86,53 +155,63 @@ public class GpaService {
             Map<String, List<Course>> grouped,
             Set<String> selectedSemesters
     ) {
-        Map<String, Double> result = new LinkedHashMap<>();
+        return calcGpaBySemester(CourseStore.of(grouped), selectedSemesters);
+    }
 
-        for (String semester : grouped.keySet()) {
-            if (selectedSemesters.contains(semester)) {
-                result.put(semester, calcGpa(grouped.get(semester)));
-            }
+    public static Map<String, Double> calcGpaBySemester(CourseStore store, Set<String> selectedSemesters) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        GradingScale scale = GradingScale.active();
+
+        double[] totals = new double[2];
+        for (int s = 0; s < store.semesterCount(); s++) {
+            String semester = store.semester(s);
+            if (!selectedSemesters.contains(semester)) continue;
+            semesterTotals(store, s, scale, totals);
+            result.put(semester, totals[1] == 0 ? 0.0 : totals[0] / totals[1]);
         }
 
         return result;
     }
 
+    /**
+     * Tổng điểm x tín chỉ (totals[0]) và tổng tín chỉ (totals[1]) được tính GPA của một kỳ.
+     */
+    static void semesterTotals(CourseStore store, int semesterId, GradingScale scale, double[] totals) {
+        double totalPoints = 0.0;
+        int totalCredits = 0;
+        int end = store.semesterEnd(semesterId);
+        for (int row = store.semesterStart(semesterId); row < end; row++) {
+            byte grade = store.grade(row);
+            if (!scale.isGraded(grade)) continue;
+            int credits = store.credits(row);
+            totalPoints += scale.points(grade) * credits;
+            totalCredits += credits;
+        }
+        totals[0] = totalPoints;
+        totals[1] = totalCredits;
+    }
+
     // =========================================================
     // Tín chỉ tích lũy theo kỳ (tính đến kỳ được chọn)
     // Logic: mỗi môn chỉ tính 1 lần; nếu học cải thiện thì lấy điểm cao nhất.
-    // Chỉ cộng tín chỉ nếu điểm cao nhất > F.
+    // Chỉ cộng tín chỉ nếu điểm cao nhất là điểm đỗ của thang đang dùng.
     // =========================================================
     public static Map<String, Integer> calcCumulativeCreditsBySemester(
             Map<String, List<Course>> grouped,
             Set<String> selectedSemesters
     ) {
+        return calcCumulativeCreditsBySemester(CourseStore.of(grouped), selectedSemesters);
+    }
+
+    public static Map<String, Integer> calcCumulativeCreditsBySemester(CourseStore store, Set<String> selectedSemesters) {
         Map<String, Integer> result = new LinkedHashMap<>();
-        Map<String, Course> bestByCode = new HashMap<>();
-
-        for (String semester : grouped.keySet()) {
-            List<Course> list = grouped.getOrDefault(semester, List.of());
-            for (Course c : list) {
-                if (isIgnoredGrade(c.getGrade())) continue;
-                String code = c.getCode();
-                if (code == null || code.isBlank()) continue;
-                if (!bestByCode.containsKey(code)) {
-                    bestByCode.put(code, c);
-                } else {
-                    Course old = bestByCode.get(code);
-                    double oldGrade4 = toGrade4(old.getGrade());
-                    double newGrade4 = toGrade4(c.getGrade());
-                    if (newGrade4 > oldGrade4) bestByCode.put(code, c);
-                }
-            }
+        RunningBest best = new RunningBest(store, GradingScale.active(), true);
 
+        for (int s = 0; s < store.semesterCount(); s++) {
+            best.addSemester(s);
+            String semester = store.semester(s);
             if (selectedSemesters.contains(semester)) {
-                int cumulativeCredits = 0;
-                for (Course best : bestByCode.values()) {
-                    if (isPassedGrade(best.getGrade())) {
-                        cumulativeCredits += best.getCredits();
-                    }
-                }
-                result.put(semester, cumulativeCredits);
+                result.put(semester, best.passedCredits());
             }
         }
 
@@ -0,0 +1,291 @@
+package calcpa.service;
+
+import calcpa.model.GradeCode;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.prefs.Preferences;
+
+/**
+ * Thang điểm: ý nghĩa của từng ký hiệu điểm (điểm số, đỗ/trượt, thứ hạng).
+ *
+ * Các thang được đọc từ grading-scales.properties và biên dịch một lần thành các bảng tra
+ * MAX_CODES phần tử, đánh chỉ số theo GradeCode của Course. Đổi thang điểm chỉ là đổi
+ * tham chiếu active (volatile); GpaService đọc active một lần cho mỗi phép tính.
+ */
+public final class GradingScale {
+    private static final Path CONFIG_PATH = Paths.get("src/main/resources/grading-scales.properties");
+    private static final Preferences preferences = Preferences.userNodeForPackage(GradingScale.class);
+    private static final String PREF_ACTIVE = "gradingScale";
+
+    // Dùng khi không đọc được file cấu hình
+    private static final String DEFAULT_CONFIG = """
+            scales=hust4
+            default=hust4
+            scale.hust4.name=Thang 4 (A+ = 4.0)
+            scale.hust4.grades=A+:4.0, A:4.0, B+:3.5, B:3.0, C+:2.5, C:2.0, D+:1.5, D:1.0, F:0
+            scale.hust4.ignored=NA, X, R
+            """;
+
+    // Loại của token trong một thang
+    private static final byte UNKNOWN = 0;
+    private static final byte GRADED = 1;
+    private static final byte PASS = 2;
+    private static final byte FAIL = 3;
+    private static final byte IGNORED = 4;
+
+    private static List<GradingScale> scales;
+    private static volatile GradingScale active;
+
+    private final String id;
+    private final String name;
+    private final double maxPoints;
+    // Token tính GPA + đạt + không đạt, theo thứ tự trong cấu hình
+    private final List<String> standardTokens = new ArrayList<>();
+    // Mọi token hợp lệ khi nhập điểm: ignored trước, rồi standardTokens
+    private final List<String> acceptedTokens = new ArrayList<>();
+
+    private final byte[] kinds = new byte[GradeCode.MAX_CODES];
+    private final double[] points = new double[GradeCode.MAX_CODES];
+    private final boolean[] passed = new boolean[GradeCode.MAX_CODES];
+    private final int[] ranks = new int[GradeCode.MAX_CODES];
+
+    private GradingScale(String id, Properties config) {
+        this.id = id;
+        String prefix = "scale." + id + ".";
+        this.name = config.getProperty(prefix + "name", id).trim();
+
+        List<String[]> graded = new ArrayList<>();
+        for (String entry : split(config.getProperty(prefix + "grades", ""))) {
+            int colon = entry.lastIndexOf(':');
+            if (colon <= 0) throw new IllegalArgumentException("Thang " + id + ": thiếu điểm số cho '" + entry + "'");
+            graded.add(new String[]{entry.substring(0, colon).trim(), entry.substring(colon + 1).trim()});
+        }
+        if (graded.isEmpty()) throw new IllegalArgumentException("Thang " + id + " không có điểm nào");
+        String passMinText = config.getProperty(prefix + "passMin", "").trim();
+        double passMin = passMinText.isEmpty() ? Double.NaN : Double.parseDouble(passMinText);
+
+        double max = 0.0;
+        List<Byte> gradedCodes = new ArrayList<>();
+        for (String[] g : graded) {
+            double value = Double.parseDouble(g[1]);
+            byte code = define(g[0], GRADED);
+            points[code & 0xFF] = value;
+            passed[code & 0xFF] = Double.isNaN(passMin) ? value > 0.0 : value >= passMin;
+            max = Math.max(max, value);
+            gradedCodes.add(code);
+        }
+        this.maxPoints = max;
+
+        List<Byte> passCodes = new ArrayList<>();
+        for (String token : split(config.getProperty(prefix + "pass", ""))) {
+            byte code = define(token, PASS);
+            passed[code & 0xFF] = true;
+            passCodes.add(code);
+        }
+        List<Byte> failCodes = new ArrayList<>();
+        for (String token : split(config.getProperty(prefix + "fail", ""))) {
+            failCodes.add(define(token, FAIL));
+        }
+        List<String> ignored = split(config.getProperty(prefix + "ignored", ""));
+        for (String token : ignored) {
+            define(token, IGNORED);
+        }
+
+        // Các mức hạng từ cao xuống thấp: mỗi điểm số một mức (các token cùng điểm ngang hạng),
+        // các token đạt chung một mức ngay dưới các điểm đỗ, các token không đạt chung mức thấp nhất
+        List<Byte> sorted = new ArrayList<>(gradedCodes);
+        sorted.sort(Comparator.comparingDouble((Byte code) -> -points[code & 0xFF]));
+        List<List<Byte>> levels = new ArrayList<>();
+        for (byte code : sorted) {
+            if (levels.isEmpty() || points[levels.getLast().getFirst() & 0xFF] != points[code & 0xFF]) {
+                levels.add(new ArrayList<>());
+            }
+            levels.getLast().add(code);
+        }
+        int passAt = 0;
+        for (int i = 0; i < levels.size(); i++) {
+            if (passed[levels.get(i).getFirst() & 0xFF]) passAt = i + 1;
+        }
+        if (!passCodes.isEmpty()) levels.add(passAt, passCodes);
+        if (!failCodes.isEmpty()) levels.add(failCodes);
+        for (int i = 0; i < levels.size(); i++) {
+            for (byte code : levels.get(i)) ranks[code & 0xFF] = levels.size() - i;
+        }
+        for (String token : ignored) acceptedTokens.add(GradeCode.normalize(token));
+        acceptedTokens.addAll(standardTokens);
+    }
+
+    private byte define(String token, byte kind) {
+        byte code = GradeCode.of(token);
+        if (code == GradeCode.NONE) throw new IllegalArgumentException("Thang " + id + ": token không hợp lệ '" + token + "'");
+        if (kinds[code & 0xFF] != UNKNOWN) throw new IllegalArgumentException("Thang " + id + ": token '" + token + "' bị lặp");
+        kinds[code & 0xFF] = kind;
+        if (kind != IGNORED) standardTokens.add(GradeCode.token(code));
+        return code;
+    }
+
+    private static List<String> split(String value) {
+        List<String> parts = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (!part.isBlank()) parts.add(part.trim());
+        }
+        return parts;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Điểm cao nhất của thang (dùng cho trục biểu đồ).
+     */
+    public double maxPoints() {
+        return maxPoints;
+    }
+
+    /**
+     * true nếu điểm được tính vào GPA/CPA.
+     */
+    public boolean isGraded(byte code) {
+        return kinds[code & 0xFF] == GRADED;
+    }
+
+    /**
+     * true nếu lần học được xét khi cộng tín chỉ tích lũy (điểm số hoặc đạt/không đạt).
+     */
+    public boolean countsCredits(byte code) {
+        byte kind = kinds[code & 0xFF];
+        return kind == GRADED || kind == PASS || kind == FAIL;
+    }
+
+    /**
+     * Điểm số theo thang, chỉ có nghĩa với điểm được tính GPA (isGraded); token khác là 0.
+     */
+    public double points(byte code) {
+        return points[code & 0xFF];
+    }
+
+    public boolean isPassed(byte code) {
+        return passed[code & 0xFF];
+    }
+
+    /**
+     * Thứ hạng để chọn lần học tốt nhất, dùng chung cho mọi nơi so sánh các lần học (tính CPA,
+     * AttemptIndex, SubjectIndex). Điểm cao hơn có hạng cao hơn, cùng điểm thì cùng hạng (vd A+ và
+     * A của thang 4) để nơi so sánh giữ lần học sớm hơn như khi so theo điểm số; token đạt xếp
+     * ngay dưới các điểm đỗ và trên các điểm trượt, token không đạt thấp nhất. Token không thuộc
+     * thang (hoặc bị bỏ qua) có hạng 0.
+     */
+    public int rank(byte code) {
+        return ranks[code & 0xFF];
+    }
+
+    /**
+     * true nếu token thuộc thang (điểm số, đạt hoặc không đạt).
+     */
+    public boolean isStandard(byte code) {
+        return countsCredits(code);
+    }
+
+    /**
+     * true nếu token được phép nhập (kể cả token bị bỏ qua như NA).
+     */
+    public boolean accepts(byte code) {
+        return kinds[code & 0xFF] != UNKNOWN;
+    }
+
+    public List<String> standardTokens() {
+        return Collections.unmodifiableList(standardTokens);
+    }
+
+    public List<String> acceptedTokens() {
+        return Collections.unmodifiableList(acceptedTokens);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Thang điểm đang dùng.
+     */
+    public static GradingScale active() {
+        GradingScale scale = active;
+        if (scale == null) {
+            load();
+            scale = active;
+        }
+        return scale;
+    }
+
+    public static synchronized List<GradingScale> available() {
+        if (scales == null) load();
+        return scales;
+    }
+
+    /**
+     * Đổi thang điểm đang dùng và lưu lựa chọn. Không có gì phải tính lại ở đây:
+     * các bảng đã được biên dịch sẵn khi load.
+     */
+    public static void setActive(String id) {
+        for (GradingScale scale : available()) {
+            if (scale.id.equals(id)) {
+                active = scale;
+                preferences.put(PREF_ACTIVE, id);
+                return;
+            }
+        }
+    }
+
+    private static synchronized void load() {
+        if (scales != null) return;
+        List<GradingScale> loaded;
+        Properties config = new Properties();
+        try {
+            if (Files.exists(CONFIG_PATH)) {
+                try (Reader reader = Files.newBufferedReader(CONFIG_PATH, StandardCharsets.UTF_8)) {
+                    config.load(reader);
+                }
+            } else {
+                config.load(new StringReader(DEFAULT_CONFIG));
+            }
+            loaded = compile(config);
+        } catch (Exception e) {
+            e.printStackTrace();
+            config = new Properties();
+            try {
+                config.load(new StringReader(DEFAULT_CONFIG));
+            } catch (Exception ignored) {
+            }
+            loaded = compile(config);
+        }
+
+        String preferred = preferences.get(PREF_ACTIVE, config.getProperty("default", ""));
+        GradingScale chosen = loaded.get(0);
+        for (GradingScale scale : loaded) {
+            if (scale.id.equals(preferred.trim())) chosen = scale;
+        }
+        scales = List.copyOf(loaded);
+        active = chosen;
+    }
+
+    private static List<GradingScale> compile(Properties config) {
+        List<GradingScale> compiled = new ArrayList<>();
+        for (String id : split(config.getProperty("scales", ""))) {
+            compiled.add(new GradingScale(id, config));
+        }
+        if (compiled.isEmpty()) throw new IllegalArgumentException("Không có thang điểm nào trong cấu hình");
+        return compiled;
+    }
+}
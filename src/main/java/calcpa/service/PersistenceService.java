@@ -0,0 +1,152 @@
+package calcpa.service;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Ghi dữ liệu kiểu write-behind trên một luồng nền duy nhất.
+ *
+ * Các handler giao diện chỉ gọi schedule(key, task): nhiều lần gọi cùng key trong
+ * COALESCE_MS được gộp thành một lần ghi (chỉ task mới nhất chạy). Mọi thao tác đĩa
+ * chạy tuần tự trên luồng "calcpa-writer", nên không có hai lần ghi chồng nhau.
+ */
+public class PersistenceService {
+    private static final long COALESCE_MS = 250;
+
+    private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "calcpa-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private static volatile Thread writerThread;
+
+    // key -> task mới nhất đang chờ ghi
+    private static final Map<String, Runnable> pending = new LinkedHashMap<>();
+
+    static {
+        writer.execute(() -> writerThread = Thread.currentThread());
+    }
+
+    /**
+     * Đặt lịch ghi cho key. Nếu key đã có task chờ thì chỉ thay task đó, không thêm lần ghi.
+     */
+    public static void schedule(String key, Runnable task) {
+        synchronized (pending) {
+            boolean queued = pending.containsKey(key);
+            pending.put(key, task);
+            if (queued) return;
+        }
+        writer.schedule(() -> runPending(key), COALESCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Chạy task định kỳ trên luồng ghi (vd compact journal).
+     */
+    public static void schedulePeriodic(Runnable task, long periodSeconds) {
+        writer.scheduleWithFixedDelay(() -> runSafely(task), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    private static void runPending(String key) {
+        Runnable task;
+        synchronized (pending) {
+            task = pending.remove(key);
+        }
+        if (task != null) runSafely(task);
+    }
+
+    private static void runAllPending() {
+        List<Runnable> tasks;
+        synchronized (pending) {
+            tasks = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        for (Runnable task : tasks) runSafely(task);
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Ghi ngay mọi task đang chờ và đợi ghi xong.
+     */
+    public static void flush() {
+        if (Thread.currentThread() == writerThread) {
+            runAllPending();
+            return;
+        }
+        try {
+            writer.submit(PersistenceService::runAllPending).get();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gọi khi thoát app: ghi nốt các thay đổi rồi dừng luồng ghi.
+     */
+    public static void shutdown() {
+        flush();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Như Consumer nhưng được ném IOException.
+     */
+    public interface IOConsumer<T> {
+        void accept(T value) throws IOException;
+    }
+
+    /**
+     * Ghi file an toàn: ghi ra file tạm cùng thư mục, fsync, rồi rename đè lên file đích.
+     * Nếu app dừng giữa chừng, file đích vẫn là bản cũ đầy đủ.
+     */
+    public static void writeAtomically(Path target, Consumer<PrintWriter> content) throws IOException {
+        writeAtomically(target, content, tmp -> { });
+    }
+
+    /**
+     * Như writeAtomically, beforeReplace nhận file tạm đã fsync ngay trước khi rename đè lên file
+     * đích; nếu nó ném lỗi thì file đích không đổi.
+     */
+    public static void writeAtomically(Path target, Consumer<PrintWriter> content,
+                                       IOConsumer<Path> beforeReplace) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            PrintWriter pw = new PrintWriter(new OutputStreamWriter(
+                    Channels.newOutputStream(ch), StandardCharsets.UTF_8));
+            content.accept(pw);
+            pw.flush();
+            if (pw.checkError()) throw new IOException("Ghi file thất bại: " + tmp);
+            ch.force(true);
+        }
+        beforeReplace.accept(tmp);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
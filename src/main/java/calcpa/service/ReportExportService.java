@@ -0,0 +1,130 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+import calcpa.model.CourseStore;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Xuất các số liệu mà dashboard tính (GPA, CPA, tín chỉ tích lũy theo từng kỳ) ra CSV hoặc xlsx.
+ *
+ * Mỗi dòng được ghi ra ngay, không dựng cả bảng kết quả trong bộ nhớ. Với xlsx dùng
+ * SXSSFWorkbook: chỉ ROW_WINDOW dòng gần nhất nằm trong heap, các dòng cũ hơn được đẩy
+ * ra file tạm. Các hàm ở đây chạy lâu, nên gọi ở luồng nền.
+ */
+public class ReportExportService {
+    private static final int ROW_WINDOW = 100;
+    private static final String[] HEADER = {"Học kỳ", "GPA", "CPA", "Tín chỉ tích lũy"};
+
+    /**
+     * Một dòng báo cáo: số liệu của một kỳ.
+     */
+    public record SemesterRow(String semester, double gpa, double cpa, int cumulativeCredits) { }
+
+    /**
+     * Xuất báo cáo cho danh sách môn. Định dạng theo đuôi file: .xlsx thì ghi Excel,
+     * còn lại ghi CSV. progress nhận tỉ lệ số kỳ đã ghi (0..1).
+     * File đích chỉ bị thay khi ghi xong toàn bộ.
+     */
+    public static void export(List<Course> courses, Path target, DoubleConsumer progress) throws IOException {
+        String name = target.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xlsx")) {
+            exportXlsx(courses, target, progress);
+        } else {
+            exportCsv(courses, target, progress);
+        }
+    }
+
+    private static void exportCsv(List<Course> courses, Path target, DoubleConsumer progress) throws IOException {
+        PersistenceService.writeAtomically(target, pw -> {
+            pw.println(String.join(",", HEADER));
+            forEachRow(courses, progress, row -> writeCsvRow(pw, row));
+        });
+    }
+
+    private static void writeCsvRow(PrintWriter pw, SemesterRow row) {
+        pw.print(escapeCsv(row.semester()));
+        pw.print(',');
+        pw.print(String.format(Locale.ROOT, "%.2f", row.gpa()));
+        pw.print(',');
+        pw.print(String.format(Locale.ROOT, "%.2f", row.cpa()));
+        pw.print(',');
+        pw.println(row.cumulativeCredits());
+    }
+
+    private static String escapeCsv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static void exportXlsx(List<Course> courses, Path target, DoubleConsumer progress) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            SXSSFSheet sheet = workbook.createSheet("GPA-CPA");
+            CellStyle decimal = workbook.createCellStyle();
+            decimal.setDataFormat(workbook.createDataFormat().getFormat("0.00"));
+
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < HEADER.length; i++) header.createCell(i).setCellValue(HEADER[i]);
+
+            int[] rowIndex = {1};
+            forEachRow(courses, progress, r -> {
+                Row row = sheet.createRow(rowIndex[0]++);
+                row.createCell(0).setCellValue(r.semester());
+                row.createCell(1).setCellValue(r.gpa());
+                row.getCell(1).setCellStyle(decimal);
+                row.createCell(2).setCellValue(r.cpa());
+                row.getCell(2).setCellStyle(decimal);
+                row.createCell(3).setCellValue(r.cumulativeCredits());
+            });
+
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                workbook.write(out);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // Xóa các file tạm của SXSSF
+            workbook.dispose();
+            workbook.close();
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Tính số liệu bằng đúng các hàm GpaService mà dashboard dùng (nên số xuất ra khớp với
+     * số hiển thị), rồi đưa từng kỳ theo thứ tự cho sink. Các map trung gian chỉ có một
+     * phần tử mỗi kỳ, không phụ thuộc số môn.
+     */
+    private static void forEachRow(List<Course> courses, DoubleConsumer progress, Consumer<SemesterRow> sink) {
+        CourseStore store = CourseStore.of(courses);
+        Set<String> all = store.semesterSet();
+        Map<String, Double> gpa = GpaService.calcGpaBySemester(store, all);
+        Map<String, Double> cpa = GpaService.calcCpaBySemester(store, all);
+        Map<String, Integer> credits = GpaService.calcCumulativeCreditsBySemester(store, all);
+
+        int total = all.size();
+        int done = 0;
+        for (String semester : all) {
+            sink.accept(new SemesterRow(semester,
+                    gpa.getOrDefault(semester, 0.0),
+                    cpa.getOrDefault(semester, 0.0),
+                    credits.getOrDefault(semester, 0)));
+            progress.accept((double) ++done / total);
+        }
+    }
+}
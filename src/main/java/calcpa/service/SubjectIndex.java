@@ -0,0 +1,198 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+import calcpa.model.GradeCode;
+
+import java.util.*;
+
+/**
+ * Chỉ mục bitmap cho trang tra cứu môn học: mỗi nhóm (sinh viên, mã môn đã trim, bỏ mã trống)
+ * lấy lần học điểm cao nhất trong các kỳ được chọn, rồi lọc theo tín chỉ và điểm của lần học đó.
+ * Với dữ liệu cả khóa, mỗi sinh viên có kết quả riêng cho cùng một mã.
+ *
+ * Các dòng được xếp theo nhóm (thứ tự xuất hiện đầu tiên), trong cùng nhóm theo hạng điểm
+ * giảm dần rồi theo thứ tự kỳ (AttemptIndex.Attempts.byRank). Nhờ vậy lần học tốt nhất của
+ * một nhóm trong một tập dòng bất kỳ chính là bit bật đầu tiên trong đoạn của nhóm đó. Mỗi giá trị
+ * tín chỉ, nhóm điểm và kỳ có một BitSet trên không gian dòng này; một truy vấn chỉ là OR các
+ * bitmap đã chọn, lấy bit đầu của từng nhóm, rồi AND với tín chỉ và điểm.
+ *
+ * Dựng từ AttemptIndex cho mỗi version dữ liệu và thang điểm (current()). Khi chỉ có điểm /
+ * tín chỉ của vài môn bị sửa, CourseService gọi onCoursesChanged và chỉ đoạn của các nhóm đó được
+ * xếp lại; thêm/xóa môn thì dựng lại. Tra cứu được từ luồng nền: việc dựng chạy ngoài khóa,
+ * còn search và việc xếp lại đoạn khóa trên chính chỉ mục.
+ */
+public final class SubjectIndex {
+    /**
+     * Nhóm điểm cho các token không thuộc thang đang dùng.
+     */
+    public static final String GRADE_OTHER = "OTHER";
+
+    private static SubjectIndex current;
+
+    private long version;
+    private final GradingScale scale;
+
+    private final Course[] rows;
+    // Nhóm thứ g chiếm các dòng [groupStart[g], groupStart[g + 1])
+    private final List<AttemptIndex.Attempts> groups;
+    private final Map<AttemptIndex.Attempts, Integer> groupIds = new IdentityHashMap<>();
+    private final int[] groupStart;
+    private final int[] rowGroup;
+    // Dòng đầu của mỗi nhóm: lần học tốt nhất khi không lọc theo kỳ
+    private final BitSet leaders;
+
+    private final Map<Integer, BitSet> byCredits = new HashMap<>();
+    private final Map<String, BitSet> byGrade = new HashMap<>();
+    private final Map<String, BitSet> bySemester = new HashMap<>();
+
+    private SubjectIndex(List<AttemptIndex.Attempts> attempts, long version, GradingScale scale) {
+        this.version = version;
+        this.scale = scale;
+
+        groups = new ArrayList<>(attempts.size());
+        for (AttemptIndex.Attempts a : attempts) {
+            if (a.code().isEmpty()) continue;
+            groupIds.put(a, groups.size());
+            groups.add(a);
+        }
+        groupStart = new int[groups.size() + 1];
+        for (int g = 0; g < groups.size(); g++) groupStart[g + 1] = groupStart[g] + groups.get(g).size();
+        int n = groupStart[groups.size()];
+
+        rows = new Course[n];
+        rowGroup = new int[n];
+        leaders = new BitSet(n);
+        for (int g = 0; g < groups.size(); g++) {
+            Arrays.fill(rowGroup, groupStart[g], groupStart[g + 1], g);
+            leaders.set(groupStart[g]);
+            fill(g);
+        }
+    }
+
+    /**
+     * Chỉ mục của danh sách môn hiện tại, dựng lại khi dữ liệu hoặc thang điểm đổi.
+     */
+    public static SubjectIndex current() {
+        long v;
+        GradingScale active;
+        synchronized (SubjectIndex.class) {
+            v = CourseService.getVersion();
+            active = GradingScale.active();
+            if (current != null && current.version == v && current.scale == active) return current;
+        }
+        // Dựng ngoài khóa để luồng UI (onCoursesChanged) không phải chờ
+        SubjectIndex built = new SubjectIndex(AttemptIndex.all(), v, active);
+        synchronized (SubjectIndex.class) {
+            if (current != null && current.version == CourseService.getVersion() && current.scale == GradingScale.active()) {
+                return current;
+            }
+            // Dữ liệu đổi trong lúc dựng: vẫn trả về cho người gọi nhưng không giữ lại
+            if (v == CourseService.getVersion() && active == GradingScale.active()) current = built;
+            return built;
+        }
+    }
+
+    /**
+     * Xếp lại đoạn của các nhóm có môn bị sửa điểm / tín chỉ (version từ fromVersion lên toVersion).
+     * Có môn thêm/xóa thì bỏ chỉ mục để lần tra cứu sau dựng lại.
+     */
+    static synchronized void onCoursesChanged(CourseDelta delta, long fromVersion, long toVersion) {
+        if (current == null) return;
+        if (current.version != fromVersion || current.scale != GradingScale.active()
+                || !delta.added().isEmpty() || !delta.removed().isEmpty() || !current.patch(delta.changed())) {
+            current = null;
+            return;
+        }
+        current.version = toVersion;
+    }
+
+    /**
+     * Lần học tốt nhất của từng nhóm (sinh viên, mã môn) thỏa bộ lọc, theo thứ tự nhóm.
+     * Tập rỗng nghĩa là không lọc.
+     *
+     * @param credits   số tín chỉ được chọn
+     * @param grades    token điểm được chọn, GRADE_OTHER cho điểm ngoài thang
+     * @param semesters kỳ được chọn: chỉ xét các lần học trong những kỳ này
+     */
+    public synchronized List<Course> search(Set<Integer> credits, Set<String> grades, Set<String> semesters) {
+        BitSet result;
+        if (semesters.isEmpty()) {
+            result = (BitSet) leaders.clone();
+        } else {
+            result = firstPerGroup(union(bySemester, semesters));
+        }
+        if (!credits.isEmpty()) result.and(union(byCredits, credits));
+        if (!grades.isEmpty()) result.and(union(byGrade, grades));
+
+        List<Course> found = new ArrayList<>(result.cardinality());
+        for (int row = result.nextSetBit(0); row >= 0; row = result.nextSetBit(row + 1)) {
+            found.add(rows[row]);
+        }
+        return found;
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    private synchronized boolean patch(List<Course> changed) {
+        Set<Integer> touched = new LinkedHashSet<>();
+        for (Course c : changed) {
+            if (c.getCode() == null || c.getCode().trim().isEmpty()) continue;
+            // Nhóm đã bị thay (thêm/xóa) kể từ lúc dựng thì không tìm thấy, dựng lại
+            AttemptIndex.Attempts attempts = AttemptIndex.get(c.getStudentId(), c.getCode());
+            Integer g = attempts == null ? null : groupIds.get(attempts);
+            if (g == null || groups.get(g).size() != groupStart[g + 1] - groupStart[g]) return false;
+            touched.add(g);
+        }
+        for (int g : touched) {
+            clear(byCredits, g);
+            clear(byGrade, g);
+            clear(bySemester, g);
+            fill(g);
+        }
+        return true;
+    }
+
+    // Ghi các lần học của nhóm thứ g vào đoạn của nó, theo hạng điểm giảm dần
+    private void fill(int g) {
+        int row = groupStart[g];
+        for (Course c : groups.get(g).byRank(scale)) {
+            rows[row] = c;
+            byCredits.computeIfAbsent(c.getCredits(), k -> new BitSet(rows.length)).set(row);
+            byGrade.computeIfAbsent(gradeBucket(c.getGradeCode()), k -> new BitSet(rows.length)).set(row);
+            String semester = c.getSemester();
+            if (semester != null) bySemester.computeIfAbsent(semester.trim(), k -> new BitSet(rows.length)).set(row);
+            row++;
+        }
+    }
+
+    private <K> void clear(Map<K, BitSet> bitmaps, int g) {
+        for (BitSet bits : bitmaps.values()) bits.clear(groupStart[g], groupStart[g + 1]);
+    }
+
+    private String gradeBucket(byte grade) {
+        return scale.isStandard(grade) ? GradeCode.token(grade) : GRADE_OTHER;
+    }
+
+    // Bit đầu tiên trong đoạn của mỗi nhóm có ít nhất một bit bật
+    private BitSet firstPerGroup(BitSet scope) {
+        BitSet first = new BitSet(rows.length);
+        int row = scope.nextSetBit(0);
+        while (row >= 0) {
+            first.set(row);
+            int next = groupStart[rowGroup[row] + 1];
+            row = next < rows.length ? scope.nextSetBit(next) : -1;
+        }
+        return first;
+    }
+
+    private <K> BitSet union(Map<K, BitSet> bitmaps, Set<K> keys) {
+        BitSet union = new BitSet(rows.length);
+        for (K key : keys) {
+            BitSet bits = bitmaps.get(key);
+            if (bits != null) union.or(bits);
+        }
+        return union;
+    }
+}
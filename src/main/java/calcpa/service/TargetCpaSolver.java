@@ -0,0 +1,257 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+import calcpa.model.CourseStore;
+import calcpa.model.GradeCode;
+
+import java.util.*;
+
+/**
+ * Tìm điểm tối thiểu cần đạt ở các môn dự kiến để CPA cuối cùng đạt mục tiêu.
+ *
+ * CPA được tính đúng như GpaService (mỗi mã môn lấy lần học điểm cao nhất), nên học lại
+ * một môn chỉ có tác dụng khi điểm mới cao hơn điểm cũ. Với mục tiêu T, CPA >= T tương đương
+ * tổng (điểm - T) * tín chỉ >= 0, nên mỗi môn dự kiến đóng góp một phần "dư" độc lập với các
+ * môn khác. Lời giải có tổng điểm x tín chỉ nhỏ nhất được tìm bằng nhánh cận (branch and bound):
+ * cắt nhánh khi phần dư tối đa còn lại không đủ, khi cận dưới của chi phí không tốt hơn
+ * lời giải đã có, hoặc khi cùng độ sâu đã gặp một trạng thái có cùng phần dư với chi phí
+ * không lớn hơn (các hoán vị của cùng một tổ hợp điểm chỉ được duyệt một lần).
+ * Quá NODE_BUDGET nút (hoặc luồng gọi bị ngắt) thì trả về lời giải tốt nhất đã tìm được
+ * (optimal = false).
+ */
+public class TargetCpaSolver {
+    private static final int NODE_BUDGET = 1_000_000;
+    private static final double EPS = 1e-9;
+    // Phần dư được làm tròn theo bước này khi so trạng thái
+    private static final double KEY_STEP = 1e-7;
+
+    /**
+     * Điểm cần đạt cho một môn dự kiến.
+     */
+    public record Assignment(Course course, String grade) {
+    }
+
+    /**
+     * Kết quả: feasible = có thể đạt mục tiêu; khi đó assignments là điểm tối thiểu cho từng
+     * môn dự kiến và cpa là CPA đạt được. maxCpa là CPA khi mọi môn dự kiến đạt điểm cao nhất.
+     */
+    public record Result(boolean feasible, boolean optimal, List<Assignment> assignments,
+                         double cpa, double maxCpa, long nodes, long elapsedNanos) {
+        @Override
+        public String toString() {
+            return String.format("TargetCpaSolver: %s, CPA %.3f (tối đa %.3f), %d nút trong %.2f ms",
+                    feasible ? (optimal ? "tối ưu" : "gần tối ưu") : "không thể đạt",
+                    cpa, maxCpa, nodes, elapsedNanos / 1_000_000.0);
+        }
+    }
+
+    // Một lựa chọn điểm cho một mã môn: thay đổi tổng điểm / tổng tín chỉ so với hiện tại
+    private record Option(String grade, double points, int credits, double surplus, double cost) {
+    }
+
+    /**
+     * Các môn dự kiến: môn chưa có điểm được tính (trống, NA, ... theo thang đang dùng).
+     */
+    public static List<Course> plannedCourses(List<Course> courses) {
+        GradingScale scale = GradingScale.active();
+        List<Course> planned = new ArrayList<>();
+        for (Course c : courses) {
+            if (!scale.countsCredits(c.getGradeCode())) planned.add(c);
+        }
+        return planned;
+    }
+
+    /**
+     * Giải với môn dự kiến là plannedCourses(courses), các môn còn lại là điểm đã có.
+     */
+    public static Result solve(List<Course> courses, double target) {
+        List<Course> planned = plannedCourses(courses);
+        Set<Course> plannedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        plannedSet.addAll(planned);
+        List<Course> done = new ArrayList<>(courses.size() - planned.size());
+        for (Course c : courses) {
+            if (!plannedSet.contains(c)) done.add(c);
+        }
+        return solve(done, planned, target);
+    }
+
+    /**
+     * @param done    các môn đã có điểm
+     * @param planned các môn dự kiến (điểm hiện tại bị bỏ qua), cùng mã môn thì chỉ xét một lần
+     * @param target  CPA mục tiêu theo thang điểm đang dùng
+     */
+    public static Result solve(List<Course> done, List<Course> planned, double target) {
+        long start = System.nanoTime();
+        GradingScale scale = GradingScale.active();
+
+        CourseStore store = CourseStore.of(done);
+        GpaService.RunningBest best = new GpaService.RunningBest(store, scale, false);
+        for (int s = 0; s < store.semesterCount(); s++) best.addSemester(s);
+        Map<String, Integer> codeIds = new HashMap<>();
+        for (int i = 0; i < store.codeCount(); i++) codeIds.put(store.code(i), i);
+
+        List<String> levels = gradedLevels(scale);
+
+        // Mỗi mã môn dự kiến là một quyết định
+        Map<String, List<Course>> byCode = new LinkedHashMap<>();
+        for (Course c : planned) byCode.computeIfAbsent(c.getCode(), k -> new ArrayList<>()).add(c);
+        List<Decision> decisions = new ArrayList<>();
+        for (List<Course> rows : byCode.values()) {
+            Course c = rows.get(0);
+            Integer codeId = codeIds.get(c.getCode());
+            int oldRow = codeId == null ? -1 : best.bestRow(codeId);
+            double oldPoints = oldRow < 0 ? 0.0 : scale.points(store.grade(oldRow));
+            int oldCredits = oldRow < 0 ? 0 : store.credits(oldRow);
+            decisions.add(new Decision(rows, options(levels, scale, c.getCredits(), oldRow >= 0, oldPoints, oldCredits, target)));
+        }
+        // Môn nhiều tín chỉ trước (ảnh hưởng lớn)
+        decisions.sort(Comparator.comparingInt((Decision d) -> -d.credits()));
+
+        Search search = new Search(decisions, target * best.totalCredits() - best.totalPoints());
+        search.run();
+
+        double basePoints = best.totalPoints();
+        int baseCredits = best.totalCredits();
+        double maxPoints = basePoints;
+        int maxCredits = baseCredits;
+        for (Decision d : decisions) {
+            Option top = d.options.get(d.options.size() - 1);
+            maxPoints += top.points();
+            maxCredits += top.credits();
+        }
+        double maxCpa = maxCredits == 0 ? 0.0 : maxPoints / maxCredits;
+
+        if (search.bestChoice == null) {
+            return new Result(false, !search.aborted, List.of(), maxCpa, maxCpa, search.nodes, System.nanoTime() - start);
+        }
+        List<Assignment> assignments = new ArrayList<>(planned.size());
+        double points = basePoints;
+        int credits = baseCredits;
+        for (int i = 0; i < decisions.size(); i++) {
+            Option o = decisions.get(i).options.get(search.bestChoice[i]);
+            points += o.points();
+            credits += o.credits();
+            for (Course c : decisions.get(i).rows) assignments.add(new Assignment(c, o.grade()));
+        }
+        double cpa = credits == 0 ? 0.0 : points / credits;
+        return new Result(true, !search.aborted, assignments, cpa, maxCpa, search.nodes, System.nanoTime() - start);
+    }
+
+    // Các mức điểm được tính GPA, tăng dần; các token cùng điểm (A+/A) lấy token hạng thấp hơn
+    private static List<String> gradedLevels(GradingScale scale) {
+        TreeMap<Double, String> byPoints = new TreeMap<>();
+        for (String token : scale.standardTokens()) {
+            byte code = GradeCode.find(token);
+            if (scale.isGraded(code)) byPoints.put(scale.points(code), token);
+        }
+        return new ArrayList<>(byPoints.values());
+    }
+
+    private static List<Option> options(List<String> levels, GradingScale scale, int credits,
+                                        boolean retake, double oldPoints, int oldCredits, double target) {
+        List<Option> options = new ArrayList<>();
+        for (String token : levels) {
+            double value = scale.points(GradeCode.find(token));
+            double cost = value * credits;
+            if (retake && value <= oldPoints) {
+                // Không cao hơn lần học cũ: CPA không đổi, chỉ giữ mức thấp nhất
+                if (options.isEmpty()) options.add(new Option(token, 0.0, 0, 0.0, cost));
+                continue;
+            }
+            double dPoints = value * credits - (retake ? oldPoints * oldCredits : 0.0);
+            int dCredits = credits - (retake ? oldCredits : 0);
+            options.add(new Option(token, dPoints, dCredits, dPoints - target * dCredits, cost));
+        }
+        return options;
+    }
+
+    private record Decision(List<Course> rows, List<Option> options) {
+        int credits() {
+            return rows.get(0).getCredits();
+        }
+    }
+
+    private static final class Search {
+        private final Option[][] options;
+        // Theo từng độ sâu: phần dư (đã làm tròn) -> chi phí nhỏ nhất đã gặp
+        private final List<Map<Long, Double>> seen;
+        private final double required;
+        // Hậu tố: phần dư lớn nhất, chi phí nhỏ nhất, phần dư của lựa chọn rẻ nhất,
+        // và min(chi phí - phần dư) để chặn dưới chi phí theo phần dư còn thiếu
+        private final double[] maxSurplus;
+        private final double[] minCost;
+        private final double[] cheapestSurplus;
+        private final double[] minSlack;
+        private final int[] choice;
+
+        int[] bestChoice;
+        double bestCost = Double.POSITIVE_INFINITY;
+        long nodes;
+        boolean aborted;
+
+        Search(List<Decision> decisions, double required) {
+            int n = decisions.size();
+            this.required = required;
+            this.options = new Option[n][];
+            for (int i = 0; i < n; i++) options[i] = decisions.get(i).options.toArray(new Option[0]);
+            this.seen = new ArrayList<>(n + 1);
+            for (int i = 0; i <= n; i++) seen.add(new HashMap<>());
+            maxSurplus = new double[n + 1];
+            minCost = new double[n + 1];
+            cheapestSurplus = new double[n + 1];
+            minSlack = new double[n + 1];
+            for (int i = n - 1; i >= 0; i--) {
+                double maxS = Double.NEGATIVE_INFINITY;
+                double slack = Double.POSITIVE_INFINITY;
+                for (Option o : options[i]) {
+                    maxS = Math.max(maxS, o.surplus());
+                    slack = Math.min(slack, o.cost() - o.surplus());
+                }
+                // Lựa chọn đầu tiên là rẻ nhất (mức điểm tăng dần)
+                maxSurplus[i] = maxSurplus[i + 1] + maxS;
+                minCost[i] = minCost[i + 1] + options[i][0].cost();
+                cheapestSurplus[i] = cheapestSurplus[i + 1] + options[i][0].surplus();
+                minSlack[i] = minSlack[i + 1] + slack;
+            }
+            choice = new int[n];
+        }
+
+        void run() {
+            dfs(0, 0.0, 0.0);
+        }
+
+        private void dfs(int i, double surplus, double cost) {
+            // Luồng tính bị ngắt (yêu cầu mới hơn thay thế) thì dừng như khi hết ngân sách
+            if (++nodes > NODE_BUDGET || ((nodes & 0xFFF) == 0 && Thread.currentThread().isInterrupted())) {
+                aborted = true;
+                return;
+            }
+            int n = options.length;
+            if (surplus + maxSurplus[i] < required - EPS) return;
+            double lower = cost + Math.max(minCost[i], (required - surplus) + minSlack[i]);
+            if (lower >= bestCost - EPS) return;
+
+            // Lấy mức thấp nhất cho mọi môn còn lại đã đủ: đó là lời giải rẻ nhất của nhánh này
+            if (surplus + cheapestSurplus[i] >= required - EPS) {
+                for (int j = i; j < n; j++) choice[j] = 0;
+                bestCost = cost + minCost[i];
+                bestChoice = choice.clone();
+                return;
+            }
+            if (i == n) return;
+
+            // Trạng thái trội: đã tới độ sâu này với cùng phần dư và chi phí không lớn hơn
+            Long key = Math.round(surplus / KEY_STEP);
+            Map<Long, Double> seenAtDepth = seen.get(i);
+            Double seenCost = seenAtDepth.get(key);
+            if (seenCost != null && seenCost <= cost + EPS) return;
+            seenAtDepth.put(key, cost);
+
+            for (int k = 0; k < options[i].length && !aborted; k++) {
+                choice[i] = k;
+                Option o = options[i][k];
+                dfs(i + 1, surplus + o.surplus(), cost + o.cost());
+            }
+        }
+    }
+}
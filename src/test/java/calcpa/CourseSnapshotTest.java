@@ -0,0 +1,74 @@
+package calcpa;
+
+import calcpa.model.Course;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CourseSnapshotTest {
+    @TempDir
+    Path dir;
+    private Path previous;
+
+    @BeforeEach
+    void useTempDirectory() {
+        previous = DataFiles.directory();
+        DataFiles.setDirectory(dir);
+    }
+
+    @AfterEach
+    void restoreDirectory() {
+        DataFiles.setDirectory(previous);
+    }
+
+    @Test
+    void snapshotTakenBeforeAnEditDuringParseIsStale() throws IOException {
+        Path csv = DataFiles.csv();
+        Files.writeString(csv, "semester,code,name,credits,grade\n20201,IT1,Môn 1,3,A\n", StandardCharsets.UTF_8);
+        DataFiles.Signature before = DataFiles.Signature.read(csv);
+        List<Course> parsed = ExcelReader.readCourses(csv, progress -> { });
+
+        // File bị sửa sau khi parse xong nhưng trước khi ghi snapshot
+        Path edited = dir.resolve("edited.csv");
+        Files.writeString(edited, "semester,code,name,credits,grade\n20201,IT1,Môn 1,3,B\n", StandardCharsets.UTF_8);
+        Files.move(edited, csv, StandardCopyOption.REPLACE_EXISTING);
+        CourseSnapshot.write(parsed, before);
+
+        assertNull(CourseSnapshot.load(progress -> { }));
+    }
+
+    @Test
+    void freshSnapshotLoadsAndCanBeReplacedAfterLoad() throws IOException {
+        Path csv = DataFiles.csv();
+        Files.writeString(csv, """
+                semester,code,name,credits,grade,student
+                20201,IT1,Môn 1,3,A,SV1
+                20202,IT2,Môn 2,2,,SV2
+                """, StandardCharsets.UTF_8);
+        DataFiles.Signature signature = DataFiles.Signature.read(csv);
+        List<Course> parsed = ExcelReader.readCourses(csv, progress -> { });
+        CourseSnapshot.write(parsed, signature);
+
+        List<Course> loaded = CourseSnapshot.load(progress -> { });
+        assertNotNull(loaded);
+        assertEquals(lines(parsed), lines(loaded));
+
+        // load không giữ file mở, ghi đè snapshot ngay sau đó vẫn được
+        CourseSnapshot.write(loaded.subList(0, 1), signature);
+        assertEquals(lines(parsed.subList(0, 1)), lines(CourseSnapshot.load(progress -> { })));
+    }
+
+    private static List<String> lines(List<Course> courses) {
+        return courses.stream().map(c -> c.toCsvLine() + "," + c.getStudentId()).toList();
+    }
+}
@@ -0,0 +1,211 @@
+package calcpa;
+
+import calcpa.model.Course;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExcelReaderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsCsvAndReportsBadRows() throws IOException {
+        Path csv = dir.resolve("data.csv");
+        Files.writeString(csv, """
+                semester,code,name,credits,grade,student
+                20201,IT1,Môn 1,3,A
+                20201,IT2,Môn 2,x,B
+
+                20202,IT3,Môn 3,2,C,SV01
+                """, StandardCharsets.UTF_8);
+
+        List<Course> courses = ExcelReader.readCourses(csv, progress -> { });
+
+        assertEquals(2, courses.size());
+        assertEquals("IT3", courses.get(1).getCode());
+        assertEquals("SV01", courses.get(1).getStudentId());
+        assertEquals(1, ExcelReader.getLastReport().errorCount());
+        assertEquals(3, ExcelReader.getLastReport().errors().get(0).line());
+    }
+
+    @Test
+    void sixthColumnIsStudentOnlyWhenHeaderNamesIt() throws IOException {
+        Path csv = dir.resolve("data.csv");
+        Files.writeString(csv, """
+                semester,code,name,credits,grade,note
+                20201,IT1,Môn 1,3,A,học lại
+                20201,IT2,Môn 2,2,B
+                """, StandardCharsets.UTF_8);
+
+        List<Course> courses = ExcelReader.readCourses(csv, progress -> { });
+
+        assertEquals(2, courses.size());
+        assertEquals("", courses.get(0).getStudentId());
+        assertEquals("A", courses.get(0).getGrade());
+        assertEquals(0, ExcelReader.getLastReport().errorCount());
+    }
+
+    @Test
+    void missingFileThrowsInsteadOfReturningEmptyList() {
+        Path xlsx = dir.resolve("data.xlsx");
+        IOException e = assertThrows(IOException.class, () -> ExcelReader.readCourses(xlsx, progress -> { }));
+        assertTrue(e.getMessage().contains(xlsx.toString()), e.getMessage());
+    }
+
+    @Test
+    void corruptXlsxThrowsInsteadOfReturningEmptyList() throws IOException {
+        Path xlsx = dir.resolve("data.xlsx");
+        Files.write(xlsx, new byte[]{'n', 'o', 't', ' ', 'z', 'i', 'p'});
+
+        assertThrows(IOException.class, () -> ExcelReader.readCourses(xlsx, progress -> { }));
+    }
+
+    @Test
+    void xlsxHeaderIsFoundByContentAndEmptyGradeIsAllowed() throws IOException {
+        Path xlsx = dir.resolve("data.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(xlsx)) {
+            XSSFSheet sheet = workbook.createSheet();
+            // Dòng tiêu đề và dòng trống phía trên header
+            sheet.createRow(0).createCell(0).setCellValue("Bảng điểm");
+            Row header = sheet.createRow(2);
+            String[] names = {"semester", "code", "name", "credits", "grade", "student"};
+            for (int i = 0; i < names.length; i++) header.createCell(i).setCellValue(names[i]);
+            Row first = sheet.createRow(3);
+            first.createCell(0).setCellValue("20201");
+            first.createCell(1).setCellValue("IT1");
+            // Tên môn dạng rich text gồm hai run khác font
+            XSSFRichTextString name = new XSSFRichTextString("Giải tích 1");
+            XSSFFont bold = workbook.createFont();
+            bold.setBold(true);
+            name.applyFont(0, 6, bold);
+            first.createCell(2).setCellValue(name);
+            first.createCell(3).setCellValue(3);
+            first.createCell(4).setCellValue("A");
+            first.createCell(5).setCellValue("SV01");
+            // Chưa có điểm: ô grade không được lưu
+            Row second = sheet.createRow(4);
+            second.createCell(0).setCellValue("20202");
+            second.createCell(1).setCellValue("IT2");
+            second.createCell(2).setCellValue("Môn 2");
+            second.createCell(3).setCellValue(2);
+            second.createCell(5).setCellValue("SV02");
+            workbook.write(out);
+        }
+
+        List<Course> courses = ExcelReader.readCourses(xlsx, progress -> { });
+
+        assertEquals(0, ExcelReader.getLastReport().errorCount());
+        assertEquals(2, courses.size());
+        assertEquals("Giải tích 1", courses.get(0).getName());
+        assertEquals(3, courses.get(0).getCredits());
+        assertEquals("SV01", courses.get(0).getStudentId());
+        assertEquals("", courses.get(1).getGrade());
+        assertEquals("SV02", courses.get(1).getStudentId());
+    }
+
+    @Test
+    void xlsxWithoutHeaderStartsWithData() throws IOException {
+        Path xlsx = dir.resolve("data.xlsx");
+        writeSheet(xlsx, """
+                <row r="1"><c r="A1" t="inlineStr"><is><t>20201</t></is></c><c r="B1" t="inlineStr"><is><t>IT1</t></is></c>\
+                <c r="C1" t="inlineStr"><is><t>Môn 1</t></is></c><c r="D1"><v>3</v></c><c r="E1" t="inlineStr"><is><t>A</t></is></c></row>
+                <row r="2"><c r="A2" t="inlineStr"><is><t>20201</t></is></c><c r="B2" t="inlineStr"><is><t>IT2</t></is></c>\
+                <c r="C2" t="inlineStr"><is><t>Môn 2</t></is></c><c r="D2" t="inlineStr"><is><t>x</t></is></c></row>
+                """);
+
+        List<Course> courses = ExcelReader.readCourses(xlsx, progress -> { });
+
+        assertEquals(1, courses.size());
+        assertEquals("IT1", courses.get(0).getCode());
+        // Sau dòng dữ liệu đầu tiên, ô tín chỉ không phải số là lỗi chứ không phải header
+        assertEquals(1, ExcelReader.getLastReport().errorCount());
+        assertEquals(2, ExcelReader.getLastReport().errors().get(0).line());
+    }
+
+    @Test
+    void xlsxCellsWithoutReferenceAndRichInlineStrings() throws IOException {
+        Path xlsx = dir.resolve("data.xlsx");
+        // Một số trình ghi bỏ thuộc tính r của row và c; chuỗi inline gồm nhiều run và phần phiên âm
+        writeSheet(xlsx, """
+                <row><c t="inlineStr"><is><t>semester</t></is></c><c t="inlineStr"><is><t>code</t></is></c>\
+                <c t="inlineStr"><is><t>name</t></is></c><c t="inlineStr"><is><t>credits</t></is></c>\
+                <c t="inlineStr"><is><t>grade</t></is></c></row>
+                <row><c t="inlineStr"><is><t>20201</t></is></c><c t="inlineStr"><is><t>IT1</t></is></c>\
+                <c t="inlineStr"><is><r><t xml:space="preserve">Giải </t></r><r><rPr><b/></rPr><t>tích 1</t></r>\
+                <rPh sb="0" eb="1"><t>ghi chú</t></rPh></is></c><c><v>3</v></c><c t="inlineStr"><is><t>B+</t></is></c></row>
+                <row><c t="inlineStr"><is><t>20202</t></is></c><c t="inlineStr"><is><t>IT2</t></is></c>\
+                <c t="inlineStr"><is><t>Môn 2</t></is></c><c><v>2.0</v></c></row>
+                """);
+
+        List<Course> courses = ExcelReader.readCourses(xlsx, progress -> { });
+
+        assertEquals(0, ExcelReader.getLastReport().errorCount());
+        assertEquals(2, courses.size());
+        assertEquals("IT1", courses.get(0).getCode());
+        assertEquals("Giải tích 1", courses.get(0).getName());
+        assertEquals(3, courses.get(0).getCredits());
+        assertEquals("B+", courses.get(0).getGrade());
+        assertEquals(2, courses.get(1).getCredits());
+        assertEquals("", courses.get(1).getGrade());
+    }
+
+    // Ghi một file xlsx tối thiểu chỉ gồm một sheet với các dòng cho sẵn
+    private static void writeSheet(Path xlsx, String rows) throws IOException {
+        Map<String, String> parts = Map.of(
+                "[Content_Types].xml", """
+                        <?xml version="1.0" encoding="UTF-8"?>
+                        <Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">\
+                        <Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>\
+                        <Default Extension="xml" ContentType="application/xml"/>\
+                        <Override PartName="/xl/workbook.xml" \
+                        ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml"/>\
+                        <Override PartName="/xl/worksheets/sheet1.xml" \
+                        ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml"/>\
+                        </Types>""",
+                "_rels/.rels", """
+                        <?xml version="1.0" encoding="UTF-8"?>
+                        <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+                        <Relationship Id="rId1" Target="xl/workbook.xml" \
+                        Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument"/>\
+                        </Relationships>""",
+                "xl/workbook.xml", """
+                        <?xml version="1.0" encoding="UTF-8"?>
+                        <workbook xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main" \
+                        xmlns:r="http://schemas.openxmlformats.org/officeDocument/2006/relationships">\
+                        <sheets><sheet name="Sheet1" sheetId="1" r:id="rId1"/></sheets></workbook>""",
+                "xl/_rels/workbook.xml.rels", """
+                        <?xml version="1.0" encoding="UTF-8"?>
+                        <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+                        <Relationship Id="rId1" Target="worksheets/sheet1.xml" \
+                        Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet"/>\
+                        </Relationships>""",
+                "xl/worksheets/sheet1.xml", """
+                        <?xml version="1.0" encoding="UTF-8"?>
+                        <worksheet xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main"><sheetData>
+                        """ + rows + "</sheetData></worksheet>");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(xlsx))) {
+            for (Map.Entry<String, String> part : parts.entrySet()) {
+                zip.putNextEntry(new ZipEntry(part.getKey()));
+                zip.write(part.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+    }
+}
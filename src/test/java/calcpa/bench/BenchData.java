@@ -0,0 +1,63 @@
+package calcpa.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Sinh file CSV giả lập cho các benchmark trong gói này. Các benchmark là chương trình main
+ * (không phải test, surefire không chạy), chạy với classpath gồm target/classes,
+ * target/test-classes và các dependency, vd:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -Xmx3g -cp target/classes:target/test-classes:$(cat cp.txt) calcpa.bench.LoadMemoryBench
+ * </pre>
+ */
+final class BenchData {
+    private static final String[] GRADES = {"A+", "A", "B+", "B", "C+", "C", "D+", "D", "F"};
+
+    private BenchData() {
+    }
+
+    /**
+     * File gồm rows dòng, mã môn ngẫu nhiên trong codes mã, các dòng trải đều trên semesters kỳ
+     * (theo thứ tự kỳ). students > 0 thì thêm cột student: mỗi sinh viên rows / students dòng
+     * liên tiếp, trải đều trên semesters kỳ của riêng mình. File bị xóa khi JVM thoát.
+     */
+    static Path csv(int rows, int codes, int semesters, int students) throws IOException {
+        Path file = Files.createTempFile("calcpa-bench", ".csv");
+        file.toFile().deleteOnExit();
+        Random random = new Random(42);
+        int perStudent = students > 0 ? Math.max(1, rows / students) : rows;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(students > 0 ? "semester,code,name,credits,grade,student" : "semester,code,name,credits,grade");
+            out.newLine();
+            for (int i = 0; i < rows; i++) {
+                int inGroup = i % perStudent;
+                int s = (int) ((long) inGroup * semesters / perStudent);
+                int code = random.nextInt(codes);
+                out.write((2000 + s / 3) + "" + (s % 3 + 1));
+                out.write(",IT" + code + ",Môn học " + code + "," + (1 + code % 4) + ",");
+                out.write(GRADES[random.nextInt(GRADES.length)]);
+                if (students > 0) out.write(",SV" + (i / perStudent));
+                out.newLine();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Heap đang dùng sau vài lần System.gc(), tức phần bộ nhớ còn bị giữ lại.
+     */
+    static long retainedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
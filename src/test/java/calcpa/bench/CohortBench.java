@@ -0,0 +1,25 @@
+package calcpa.bench;
+
+import calcpa.ExcelReader;
+import calcpa.model.Course;
+import calcpa.service.CohortService;
+
+import java.util.List;
+
+/**
+ * Thông lượng CohortService.computeAll trên một khóa giả lập (mặc định 20.000 sinh viên x 56
+ * môn, 8 kỳ mỗi người). Lần đầu là số khi JIT còn nguội. Tham số: số sinh viên, số môn mỗi người.
+ */
+public class CohortBench {
+    public static void main(String[] args) throws Exception {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int perStudent = args.length > 1 ? Integer.parseInt(args[1]) : 56;
+        List<Course> courses = ExcelReader.readCourses(
+                BenchData.csv(students * perStudent, 300, 8, students), progress -> { });
+
+        for (int round = 0; round < 5; round++) {
+            CohortService.computeAll(courses);
+            System.out.println("vòng " + round + ": " + CohortService.getLastStats());
+        }
+    }
+}
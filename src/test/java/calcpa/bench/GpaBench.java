@@ -0,0 +1,38 @@
+package calcpa.bench;
+
+import calcpa.ExcelReader;
+import calcpa.model.Course;
+import calcpa.service.GpaService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Thời gian tính GPA trên dữ liệu lớn (mặc định 600.000 dòng): calcGpa trên toàn bộ danh sách
+ * (ns mỗi môn) và 5 lần tính ba series của dashboard (GPA, CPA, tín chỉ tích lũy theo kỳ).
+ * Chạy vài vòng, các vòng sau là số sau khi JIT đã nóng. Tham số: số dòng.
+ */
+public class GpaBench {
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 600_000;
+        List<Course> courses = ExcelReader.readCourses(BenchData.csv(rows, 5_000, 40, 0), progress -> { });
+        Map<String, List<Course>> grouped = GpaService.groupBySemester(courses);
+        Set<String> all = grouped.keySet();
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            double sink = 0;
+            for (int i = 0; i < 10; i++) sink += GpaService.calcGpa(courses);
+            long gpaDone = System.nanoTime();
+            for (int i = 0; i < 5; i++) {
+                GpaService.calcGpaBySemester(grouped, all);
+                GpaService.calcCpaBySemester(grouped, all);
+                GpaService.calcCumulativeCreditsBySemester(grouped, all);
+            }
+            long seriesDone = System.nanoTime();
+            System.out.printf("vòng %d: calcGpa %.1f ns/môn, 3 series x5 %.0f ms (%.3f)%n", round,
+                    (gpaDone - start) / 10.0 / courses.size(), (seriesDone - gpaDone) / 1_000_000.0, sink);
+        }
+    }
+}
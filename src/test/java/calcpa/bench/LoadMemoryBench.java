@@ -0,0 +1,25 @@
+package calcpa.bench;
+
+import calcpa.ExcelReader;
+import calcpa.model.Course;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Bộ nhớ heap bị giữ lại sau khi đọc một file lớn (mặc định 1.000.000 dòng, 5.000 mã môn,
+ * 40 kỳ), kèm ước lượng của từ điển giá trị trong LoadStats. Tham số: số dòng.
+ */
+public class LoadMemoryBench {
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path file = BenchData.csv(rows, 5_000, 40, 0);
+
+        long before = BenchData.retainedHeap();
+        List<Course> courses = ExcelReader.readCourses(file, progress -> { });
+        long retained = BenchData.retainedHeap() - before;
+
+        System.out.printf("%d dòng, heap bị giữ lại ~%.0f MB%n", courses.size(), retained / 1_000_000.0);
+        System.out.println(ExcelReader.getLastStats());
+    }
+}
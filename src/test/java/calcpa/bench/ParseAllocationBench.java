@@ -0,0 +1,34 @@
+package calcpa.bench;
+
+import calcpa.ExcelReader;
+import calcpa.model.Course;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Số byte cấp phát mỗi dòng khi parse CSV (mặc định 1.000.000 dòng), cộng trên mọi luồng vì
+ * các chunk được parse trong ForkJoinPool. Lần đọc đầu để làm nóng JIT. Tham số: số dòng.
+ */
+public class ParseAllocationBench {
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path file = BenchData.csv(rows, 5_000, 40, 0);
+        ExcelReader.readCourses(file, progress -> { });
+
+        long before = allocatedBytes();
+        List<Course> courses = ExcelReader.readCourses(file, progress -> { });
+        long allocated = allocatedBytes() - before;
+
+        System.out.printf("%d dòng, cấp phát ~%d B/dòng%n", courses.size(), allocated / courses.size());
+        System.out.println(ExcelReader.getLastStats());
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long id : threads.getAllThreadIds()) total += Math.max(0, threads.getThreadAllocatedBytes(id));
+        return total;
+    }
+}
@@ -0,0 +1,86 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Chỉ mục cập nhật theo từng phần thay đổi (apply) phải trùng với dựng lại từ đầu (rebuild).
+ */
+class AttemptIndexTest {
+    @Test
+    void applyMatchesRebuildAfterMovesAddsRemovesAndEdits() {
+        Random random = new Random(23);
+        // Ba sinh viên học cùng các mã môn
+        List<Course> live = TestCourses.random(random, 500, 40, 6, 3);
+        AttemptIndex.rebuild(live);
+
+        for (int round = 0; round < 2000; round++) {
+            Course c = live.get(random.nextInt(live.size()));
+            switch (random.nextInt(6)) {
+                case 0 -> {
+                    // Như CourseService.changeSemester: bản sao kỳ cũ bị xóa, chính đối tượng được thêm
+                    Course old = TestCourses.copy(c);
+                    c.setSemester(TestCourses.semester(random, 6));
+                    AttemptIndex.apply(new CourseDelta(List.of(c), List.of(old), List.of()));
+                }
+                case 1 -> {
+                    live.remove(c);
+                    AttemptIndex.apply(new CourseDelta(List.of(), List.of(c), List.of()));
+                }
+                case 2 -> {
+                    Course added = TestCourses.random(random, 40, 6, 3);
+                    live.add(added);
+                    AttemptIndex.apply(new CourseDelta(List.of(added), List.of(), List.of()));
+                }
+                default -> {
+                    c.setGrade(TestCourses.grade(random));
+                    AttemptIndex.apply(new CourseDelta(List.of(), List.of(), List.of(c)));
+                }
+            }
+            if (round % 100 == 0) {
+                List<String> incremental = state(live);
+                AttemptIndex.rebuild(live);
+                assertEquals(state(live), incremental, "vòng " + round);
+            }
+        }
+    }
+
+    @Test
+    void studentsWithTheSameCodeHaveSeparateAttempts() {
+        Course a1 = new Course("IT1", "Môn 1", 3, "D", "20201", "SV1");
+        Course b1 = new Course("IT1", "Môn 1", 3, "A", "20201", "SV2");
+        Course a2 = new Course("IT1", "Môn 1", 3, "B", "20201", "SV1");
+        Course b2 = new Course("IT1", "Môn 1", 3, "C", "20202", "SV2");
+        AttemptIndex.rebuild(List.of(a1, b1, a2, b2));
+
+        assertEquals(2, AttemptIndex.groupCount());
+        AttemptIndex.Attempts sv1 = AttemptIndex.get("SV1", "IT1");
+        AttemptIndex.Attempts sv2 = AttemptIndex.get("SV2", "IT1");
+        assertEquals(List.of(a1, a2), List.of(sv1.get(0), sv1.get(1)));
+        assertEquals(List.of(b1, b2), List.of(sv2.get(0), sv2.get(1)));
+        assertSame(a2, sv1.best());
+        assertSame(b1, sv2.best());
+        // Dòng trùng (sinh viên, kỳ, mã) chỉ đếm trong cùng sinh viên
+        assertEquals(0, AttemptIndex.duplicatesBefore(b1));
+        assertEquals(1, AttemptIndex.duplicatesBefore(a2));
+    }
+
+    // Nội dung chỉ mục theo vị trí của môn trong danh sách: thứ tự mã, các lần học, best và byRank
+    private static List<String> state(List<Course> live) {
+        Map<Course, Integer> position = new IdentityHashMap<>();
+        for (int i = 0; i < live.size(); i++) position.put(live.get(i), i);
+        GradingScale scale = GradingScale.active();
+        List<String> state = new ArrayList<>();
+        for (AttemptIndex.Attempts a : AttemptIndex.all()) {
+            List<Integer> attempts = new ArrayList<>();
+            for (int i = 0; i < a.size(); i++) attempts.add(position.get(a.get(i)));
+            List<Integer> byRank = a.byRank(scale).stream().map(position::get).toList();
+            state.add(a.studentId() + "/" + a.code() + " " + attempts + " best=" + position.get(a.best()) + " byRank=" + byRank);
+        }
+        return state;
+    }
+}
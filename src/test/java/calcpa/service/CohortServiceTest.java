@@ -0,0 +1,34 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CohortServiceTest {
+    @Test
+    void recomputeOnlyTouchesNamedStudentsAndMatchesComputeAll() {
+        List<Course> before = new ArrayList<>(List.of(
+                new Course("IT1", "Môn 1", 3, "A", "20201", "SV1"),
+                new Course("IT2", "Môn 2", 2, "C", "20201", "SV1"),
+                new Course("IT1", "Môn 1", 3, "B", "20201", "SV2"),
+                new Course("IT2", "Môn 2", 2, "D", "20202", "SV2"),
+                new Course("IT1", "Môn 1", 3, "F", "20201", "SV3")));
+        List<CohortService.StudentSeries> previous = CohortService.computeAll(before);
+
+        // SV2 học lại IT2, SV3 bị xóa hết môn, SV4 mới
+        List<Course> after = new ArrayList<>(before.subList(0, 4));
+        after.add(new Course("IT2", "Môn 2", 2, "A", "20211", "SV2"));
+        after.add(new Course("IT3", "Môn 3", 4, "B+", "20211", "SV4"));
+        List<CohortService.StudentSeries> updated =
+                CohortService.recompute(previous, after, Set.of("SV2", "SV3", "SV4"));
+        assertEquals(2, CohortService.getLastStats().students());
+
+        assertEquals(CohortService.computeAll(after), updated);
+        assertEquals(List.of("SV1", "SV2", "SV4"), updated.stream().map(CohortService.StudentSeries::studentId).toList());
+        // SV1 không đổi nên giữ nguyên kết quả cũ
+        assertSame(previous.get(0), updated.get(0));
+    }
+}
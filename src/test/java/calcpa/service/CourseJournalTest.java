@@ -0,0 +1,265 @@
+package calcpa.service;
+
+import calcpa.DataFiles;
+import calcpa.ExcelReader;
+import calcpa.model.Course;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Replay journal (và compact) phải cho đúng danh sách mà app có trong bộ nhớ sau các lần sửa.
+ */
+class CourseJournalTest {
+    @TempDir
+    Path dir;
+
+    // Danh sách trong bộ nhớ và journal được ghi song song, như CourseService làm
+    private final List<Course> live = new ArrayList<>();
+    private final StringBuilder journal = new StringBuilder();
+    private Path previousDirectory;
+
+    @BeforeEach
+    void useTempDirectory() {
+        previousDirectory = DataFiles.directory();
+        DataFiles.setDirectory(dir);
+    }
+
+    @AfterEach
+    void restoreDirectory() {
+        CourseJournal.close();
+        DataFiles.setDirectory(previousDirectory);
+    }
+
+    @Test
+    void replayTargetsTheEditedDuplicateRow() throws IOException {
+        List<Course> base = List.of(
+                new Course("IT1", "Môn 1", 3, "F", "20201"),
+                new Course("IT1", "Môn 1", 3, "D", "20201"),
+                new Course("IT2", "Môn 2", 2, "B", "20201"),
+                new Course("IT1", "Môn 1", 3, "C", "20202"));
+        start(base);
+
+        setGrade(live.get(1), "A");
+        setCredits(live.get(1), 4);
+        // Chuyển dòng trùng thứ hai sang kỳ đã có IT1, rồi sửa nó ở kỳ mới
+        move(live.get(1), "20202");
+        setGrade(live.get(1), "B+");
+        remove(live.get(0));
+
+        List<Course> replayed = replay(base, journal.toString());
+        assertEquals(lines(live), lines(replayed));
+        assertEquals(List.of("20202,IT1,Môn 1,4,B+", "20201,IT2,Môn 2,2,B", "20202,IT1,Môn 1,3,C"), lines(replayed));
+    }
+
+    @Test
+    void replayEditsOnlyTheNamedStudentsRow() throws IOException {
+        // Hai sinh viên cùng học IT1 trong kỳ 20201, SV2 có hai dòng trùng
+        List<Course> base = List.of(
+                new Course("IT1", "Môn 1", 3, "F", "20201", "SV1"),
+                new Course("IT1", "Môn 1", 3, "D", "20201", "SV2"),
+                new Course("IT1", "Môn 1", 3, "C", "20201", "SV2"),
+                new Course("IT2", "Môn 2", 2, "B", "20201", "SV1"));
+        start(base);
+
+        setGrade(live.get(2), "A");
+        move(live.get(1), "20202");
+        setCredits(live.get(0), 4);
+        remove(live.get(3));
+
+        List<Course> replayed = replay(base, journal.toString());
+        assertEquals(lines(live), lines(replayed));
+        assertEquals(List.of("20201,IT1,Môn 1,4,F,SV1", "20202,IT1,Môn 1,3,D,SV2", "20201,IT1,Môn 1,3,A,SV2"),
+                lines(replayed));
+    }
+
+    @Test
+    void replayMatchesLiveListAfterRandomEdits() throws IOException {
+        List<Course> base = randomCourses(new Random(7));
+        start(base);
+        randomEdits(new Random(11), 3000);
+
+        assertEquals(lines(live), lines(replay(base, journal.toString())));
+    }
+
+    @Test
+    void compactThenReplayMatchesFullReplay() throws IOException {
+        List<Course> base = randomCourses(new Random(3));
+        start(base);
+        randomEdits(new Random(5), 1500);
+        String rotated = journal.toString();
+        journal.setLength(0);
+        randomEdits(new Random(9), 1500);
+        String current = journal.toString();
+
+        // Compact: file gốc + journal đã tách ghi thành data.csv mới, rồi đọc lại và áp journal mới
+        List<Course> compacted = replay(base, rotated);
+        Path csv = dir.resolve("data.csv");
+        CourseService.writeCsv(csv, compacted);
+        List<Course> reloaded = replay(ExcelReader.readCourses(csv, progress -> { }), current);
+
+        assertEquals(lines(live), lines(reloaded));
+        assertEquals(lines(live), lines(replay(base, rotated + current)));
+    }
+
+    @Test
+    void externalEditWinsOverOlderJournal() throws IOException {
+        Path csv = DataFiles.csv();
+        Files.writeString(csv, "semester,code,name,credits,grade\n20201,IT1,Môn 1,3,A\n", StandardCharsets.UTF_8);
+        Files.writeString(DataFiles.journal(), "#base|" + DataFiles.Signature.read(csv).format()
+                + "\nG|20201|IT1|B\n", StandardCharsets.UTF_8);
+        assertEquals(List.of("20201,IT1,Môn 1,3,B"), lines(CourseJournal.loadWithJournal()));
+
+        // Sửa cùng dòng từ bên ngoài app, như DataFileWatcher thấy rồi đọc lại
+        Files.writeString(csv, "semester,code,name,credits,grade\n20201,IT1,Môn 1,3,C\n", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(Files.getLastModifiedTime(csv).toMillis() + 2000));
+        assertEquals(List.of("20201,IT1,Môn 1,3,C"), lines(CourseJournal.loadWithJournal()));
+        assertFalse(Files.exists(DataFiles.journal()));
+        assertTrue(Files.exists(DataFiles.staleJournal()));
+
+        // Compact sau đó không ghi lại điểm cũ vào data.csv
+        CourseJournal.compactIfNeeded();
+        assertEquals(List.of("20201,IT1,Môn 1,3,C"), lines(CourseJournal.loadWithJournal()));
+        assertEquals(List.of("20201,IT1,Môn 1,3,C"), lines(ExcelReader.readCourses(csv, progress -> { })));
+    }
+
+    @Test
+    void editsMadeDuringCompactSurviveTheRewrite() throws IOException {
+        Path csv = DataFiles.csv();
+        Files.writeString(csv, "semester,code,name,credits,grade\n20201,IT1,Môn 1,3,A\n20201,IT2,Môn 2,2,A\n",
+                StandardCharsets.UTF_8);
+        Files.writeString(DataFiles.journal(), "#base|" + DataFiles.Signature.read(csv).format()
+                + "\nG|20201|IT1|B\n", StandardCharsets.UTF_8);
+        List<Course> loaded = CourseJournal.loadWithJournal();
+
+        // Journal đã được tách để compact; bản sửa mới vào journal mới, ghi trên file gốc cũ
+        Files.move(DataFiles.journal(), DataFiles.rotatedJournal());
+        CourseJournal.recordCredits(loaded.get(1), 4);
+        CourseJournal.sync();
+        CourseJournal.compactIfNeeded();
+
+        List<String> expected = List.of("20201,IT1,Môn 1,3,B", "20201,IT2,Môn 2,4,A");
+        assertFalse(Files.exists(DataFiles.rotatedJournal()));
+        assertEquals(List.of("20201,IT1,Môn 1,3,B", "20201,IT2,Môn 2,2,A"),
+                lines(ExcelReader.readCourses(csv, progress -> { })));
+        assertEquals(expected, lines(CourseJournal.loadWithJournal()));
+
+        // Compact lần nữa đóng journal và gộp nốt
+        CourseJournal.compactIfNeeded();
+        assertEquals(expected, lines(ExcelReader.readCourses(csv, progress -> { })));
+    }
+
+    @Test
+    void crashAfterCompactReplacedTheFileDoesNotReplayTwice() throws IOException {
+        Path csv = DataFiles.csv();
+        Files.writeString(csv, "semester,code,name,credits,grade\n20201,IT1,Môn 1,3,A\n20201,IT1,Môn 1,3,C\n",
+                StandardCharsets.UTF_8);
+        String before = DataFiles.Signature.read(csv).format();
+        Files.writeString(DataFiles.rotatedJournal(), "#base|" + before + "\nR|20201|IT1|\n", StandardCharsets.UTF_8);
+
+        // Compact đã thay data.csv và đánh dấu journal mới, app dừng trước khi xóa journal đã tách
+        CourseService.writeCsv(List.of(new Course("IT1", "Môn 1", 3, "C", "20201")), after ->
+                Files.writeString(DataFiles.journal(), "#base|" + before + "\n#base|" + after.format()
+                        + "\nC|20201|IT1|4\n", StandardCharsets.UTF_8));
+
+        List<String> expected = List.of("20201,IT1,Môn 1,4,C");
+        assertEquals(expected, lines(CourseJournal.loadWithJournal()));
+        CourseJournal.compactIfNeeded();
+        assertFalse(Files.exists(DataFiles.rotatedJournal()));
+        assertEquals(expected, lines(CourseJournal.loadWithJournal()));
+    }
+
+    @Test
+    void crashBeforeCompactReplacedTheFileReplaysBothJournals() throws IOException {
+        Path csv = DataFiles.csv();
+        Files.writeString(csv, "semester,code,name,credits,grade\n20201,IT1,Môn 1,3,A\n20201,IT1,Môn 1,3,C\n",
+                StandardCharsets.UTF_8);
+        String before = DataFiles.Signature.read(csv).format();
+        Files.writeString(DataFiles.rotatedJournal(), "#base|" + before + "\nR|20201|IT1|\n", StandardCharsets.UTF_8);
+        // Dấu của bản compact đã được ghi nhưng file tạm chưa kịp thay data.csv
+        Path unused = dir.resolve("data.csv.tmp");
+        Files.writeString(unused, "semester,code,name,credits,grade\n20201,IT1,Môn 1,3,C\n", StandardCharsets.UTF_8);
+        Files.writeString(DataFiles.journal(), "#base|" + before + "\n#base|"
+                + DataFiles.Signature.read(unused).withName("data.csv").format() + "\nC|20201|IT1|4\n",
+                StandardCharsets.UTF_8);
+
+        List<String> expected = List.of("20201,IT1,Môn 1,4,C");
+        assertEquals(expected, lines(CourseJournal.loadWithJournal()));
+        CourseJournal.compactIfNeeded();
+        assertFalse(Files.exists(DataFiles.rotatedJournal()));
+        assertEquals(expected, lines(CourseJournal.loadWithJournal()));
+    }
+
+    private void start(List<Course> base) {
+        live.clear();
+        live.addAll(TestCourses.copyAll(base));
+        AttemptIndex.rebuild(live);
+        journal.setLength(0);
+    }
+
+    private void randomEdits(Random random, int count) {
+        for (int i = 0; i < count && !live.isEmpty(); i++) {
+            Course c = live.get(random.nextInt(live.size()));
+            switch (random.nextInt(10)) {
+                case 0 -> remove(c);
+                case 1, 2 -> move(c, TestCourses.semester(random, 3));
+                case 3 -> setCredits(c, 1 + random.nextInt(4));
+                default -> setGrade(c, TestCourses.grade(random));
+            }
+        }
+    }
+
+    private void setGrade(Course c, String grade) {
+        CourseJournal.appendLine(journal, "G", c, grade);
+        c.setGrade(grade);
+        AttemptIndex.apply(new CourseDelta(List.of(), List.of(), List.of(c)));
+    }
+
+    private void setCredits(Course c, int credits) {
+        CourseJournal.appendLine(journal, "C", c, String.valueOf(credits));
+        c.setCredits(credits);
+        AttemptIndex.apply(new CourseDelta(List.of(), List.of(), List.of(c)));
+    }
+
+    private void move(Course c, String semester) {
+        CourseJournal.appendLine(journal, "M", c, semester);
+        Course old = TestCourses.copy(c);
+        c.setSemester(semester);
+        AttemptIndex.apply(new CourseDelta(List.of(c), List.of(old), List.of()));
+    }
+
+    private void remove(Course c) {
+        CourseJournal.appendLine(journal, "R", c, "");
+        live.remove(c);
+        AttemptIndex.apply(new CourseDelta(List.of(), List.of(c), List.of()));
+    }
+
+    private List<Course> replay(List<Course> base, String lines) throws IOException {
+        Path file = Files.createTempFile(dir, "data", ".journal");
+        Files.writeString(file, lines, StandardCharsets.UTF_8);
+        List<Course> courses = TestCourses.copyAll(base);
+        CourseJournal.replay(courses, file);
+        return courses;
+    }
+
+    // Ít mã môn, ba kỳ và hai sinh viên để có nhiều dòng trùng (student, semester, code)
+    private static List<Course> randomCourses(Random random) {
+        return TestCourses.random(random, 400, 12, 3, 2);
+    }
+
+    private static List<String> lines(List<Course> courses) {
+        return courses.stream().map(Course::toCsvLine).toList();
+    }
+}
@@ -0,0 +1,64 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Kết quả sau khi vá theo từng lần sửa điểm / tín chỉ phải trùng với tính lại từ đầu.
+ */
+class GpaCacheTest {
+    @Test
+    void patchedResultsMatchFullRecompute() {
+        Random random = new Random(17);
+        // Cache tính cho dữ liệu một sinh viên
+        List<Course> live = TestCourses.random(random, 3000, 150, 9, 0);
+        CourseService.setData(live);
+        Set<String> all = new HashSet<>(GpaService.groupBySemester(live).keySet());
+        Set<String> someSemesters = Set.of("20202", "20204", "20205", "20208");
+
+        long patchesBefore = GpaCache.stats().patches();
+        for (int round = 0; round < 200; round++) {
+            // Cache phải đang có kết quả thì mới được vá
+            Snapshot patched = Snapshot.take(all, someSemesters);
+            if (round > 0) assertEquals(patched, recomputed(all, someSemesters), "vòng " + round);
+
+            List<Course> fresh = TestCourses.copyAll(CourseService.getAllCourses());
+            for (int k = 1 + random.nextInt(3); k > 0; k--) {
+                Course c = fresh.get(random.nextInt(fresh.size()));
+                if (random.nextBoolean()) c.setGrade(TestCourses.grade(random));
+                else c.setCredits(1 + random.nextInt(4));
+            }
+            assertTrue(CourseService.applyExternalChange(fresh, CourseService.getVersion()));
+        }
+        assertTrue(GpaCache.stats().patches() - patchesBefore >= 150, "kết quả phải đến từ đường vá");
+    }
+
+    // Cùng các đối tượng Course nhưng version mới: cache bỏ hết và tính lại từ đầu
+    private static Snapshot recomputed(Set<String> all, Set<String> someSemesters) {
+        CourseService.setData(new ArrayList<>(CourseService.getAllCourses()));
+        return Snapshot.take(all, someSemesters);
+    }
+
+    private record Snapshot(Map<String, Double> gpa, Map<String, Double> cpa, Map<String, Integer> credits,
+                            List<String> newAndRepeat) {
+        static Snapshot take(Set<String> all, Set<String> selected) {
+            List<String> newAndRepeat = new ArrayList<>();
+            for (String semester : new TreeSet<>(all)) {
+                newAndRepeat.add(Arrays.toString(GpaCache.newAndRepeatCredits(semester, selected)));
+            }
+            return new Snapshot(round(GpaCache.gpaBySemester(all)), round(GpaCache.cpaBySemester(all)),
+                    GpaCache.cumulativeCreditsBySemester(all), newAndRepeat);
+        }
+
+        // Vá cộng / trừ từng phần nên có thể lệch ở chữ số cuối với thang có điểm lẻ (3.7, 3.3...)
+        private static Map<String, Double> round(Map<String, Double> values) {
+            Map<String, Double> rounded = new LinkedHashMap<>();
+            values.forEach((k, v) -> rounded.put(k, Math.round(v * 1e9) / 1e9));
+            return rounded;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+import calcpa.model.CourseStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CPA tính một lượt bằng RunningBest phải trùng với cách tính gốc: mỗi kỳ chuẩn hóa lại toàn bộ
+ * danh sách tích lũy, giữ lần học đầu tiên có điểm cao nhất của từng mã.
+ */
+class GpaServiceTest {
+    @Test
+    void equalPointRetakeKeepsTheEarlierAttemptsCredits() {
+        GradingScale hust4 = GradingScale.available().stream()
+                .filter(s -> s.id().equals("hust4")).findFirst().orElseThrow();
+        Map<String, List<Course>> grouped = GpaService.groupBySemester(List.of(
+                new Course("IT1", "Môn 1", 2, "A", "20201"),
+                new Course("IT2", "Môn 2", 2, "C", "20201"),
+                new Course("IT1", "Môn 1", 4, "A+", "20202")));
+
+        // A và A+ cùng 4.0: lần học đầu (2 tín chỉ) được giữ, (4 * 2 + 2 * 2) / 4
+        assertEquals(Map.of("20201", 3.0, "20202", 3.0), runningCpa(grouped, hust4));
+        assertEquals(baselineCpa(grouped, hust4), runningCpa(grouped, hust4));
+    }
+
+    @Test
+    void runningCpaMatchesBaselineOnRandomRetakes() {
+        Random random = new Random(17);
+        for (GradingScale scale : GradingScale.available()) {
+            List<String> tokens = scale.standardTokens();
+            List<Course> courses = new ArrayList<>();
+            for (int i = 0; i < 1500; i++) {
+                int code = random.nextInt(30);
+                courses.add(new Course("IT" + code, "Môn " + code, 1 + random.nextInt(4),
+                        tokens.get(random.nextInt(tokens.size())), "2020" + (1 + random.nextInt(6))));
+            }
+            Map<String, List<Course>> grouped = GpaService.groupBySemester(courses);
+
+            Map<String, Double> expected = baselineCpa(grouped, scale);
+            Map<String, Double> actual = runningCpa(grouped, scale);
+            assertEquals(expected.keySet(), actual.keySet());
+            for (String semester : expected.keySet()) {
+                assertEquals(expected.get(semester), actual.get(semester), 1e-9, scale.id() + " " + semester);
+            }
+        }
+    }
+
+    private static Map<String, Double> runningCpa(Map<String, List<Course>> grouped, GradingScale scale) {
+        CourseStore store = CourseStore.of(grouped);
+        GpaService.RunningBest best = new GpaService.RunningBest(store, scale, false);
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int s = 0; s < store.semesterCount(); s++) {
+            best.addSemester(s);
+            result.put(store.semester(s), best.gpa());
+        }
+        return result;
+    }
+
+    private static Map<String, Double> baselineCpa(Map<String, List<Course>> grouped, GradingScale scale) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        List<Course> accumulated = new ArrayList<>();
+        for (Map.Entry<String, List<Course>> e : grouped.entrySet()) {
+            accumulated.addAll(e.getValue());
+            Map<String, Course> bestByCode = new HashMap<>();
+            for (Course c : accumulated) {
+                if (!scale.isGraded(c.getGradeCode())) continue;
+                Course old = bestByCode.get(c.getCode());
+                if (old == null || scale.points(c.getGradeCode()) > scale.points(old.getGradeCode())) {
+                    bestByCode.put(c.getCode(), c);
+                }
+            }
+            double totalPoints = 0.0;
+            int totalCredits = 0;
+            for (Course c : bestByCode.values()) {
+                totalPoints += scale.points(c.getGradeCode()) * c.getCredits();
+                totalCredits += c.getCredits();
+            }
+            result.put(e.getKey(), totalCredits == 0 ? 0.0 : totalPoints / totalCredits);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+import calcpa.model.CourseStore;
+import calcpa.model.GradeCode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradingScaleTest {
+    @Test
+    void rankFollowsPointsWithPassTokensBetweenPassingAndFailingGrades() {
+        for (GradingScale scale : GradingScale.available()) {
+            for (String a : scale.standardTokens()) {
+                for (String b : scale.standardTokens()) {
+                    byte x = GradeCode.find(a);
+                    byte y = GradeCode.find(b);
+                    String pair = scale.id() + ": " + a + " / " + b;
+                    if (scale.isGraded(x) && scale.isGraded(y) && scale.points(x) > scale.points(y)) {
+                        assertTrue(scale.rank(x) > scale.rank(y), pair);
+                    }
+                    // Cùng điểm thì cùng hạng: lần học sớm hơn được giữ, như khi so theo điểm số
+                    if (scale.isGraded(x) && scale.isGraded(y) && scale.points(x) == scale.points(y)) {
+                        assertEquals(scale.rank(x), scale.rank(y), pair);
+                    }
+                    if (!scale.isGraded(x) && scale.isPassed(x) && scale.isGraded(y)) {
+                        assertEquals(scale.isPassed(y), scale.rank(y) > scale.rank(x), pair);
+                    }
+                    if (!scale.isGraded(x) && !scale.isPassed(x) && scale.isGraded(y)) {
+                        assertTrue(scale.rank(y) > scale.rank(x), pair);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void equalPointRetakesKeepTheEarlierAttempt() {
+        for (GradingScale scale : GradingScale.available()) {
+            List<String> tokens = scale.standardTokens();
+            for (String a : tokens) {
+                for (String b : tokens) {
+                    byte x = GradeCode.find(a);
+                    byte y = GradeCode.find(b);
+                    if (a.equals(b) || !scale.isGraded(x) || !scale.isGraded(y) || scale.points(x) != scale.points(y)) continue;
+                    Course first = new Course("IT1", "Môn 1", 2, a, "20201");
+                    Course retake = new Course("IT1", "Môn 1", 4, b, "20202");
+                    AttemptIndex.rebuild(List.of(first, retake));
+                    assertSame(first, AttemptIndex.get("", "IT1").byRank(scale).get(0), scale.id() + ": " + a + " / " + b);
+                }
+            }
+        }
+    }
+
+    @Test
+    void cpaAndAttemptIndexPickTheSameBestAttempt() {
+        Random random = new Random(1);
+        for (GradingScale scale : GradingScale.available()) {
+            List<String> tokens = scale.standardTokens();
+            List<Course> courses = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                int code = random.nextInt(60);
+                courses.add(new Course("IT" + code, "Môn " + code, 1 + random.nextInt(4),
+                        tokens.get(random.nextInt(tokens.size())), "2020" + (1 + random.nextInt(6))));
+            }
+            AttemptIndex.rebuild(courses);
+            CourseStore store = CourseStore.of(courses);
+            GpaService.RunningBest credits = new GpaService.RunningBest(store, scale, true);
+            for (int s = 0; s < store.semesterCount(); s++) credits.addSemester(s);
+
+            for (int codeId = 0; codeId < store.codeCount(); codeId++) {
+                Course best = AttemptIndex.get("", store.code(codeId)).byRank(scale).get(0);
+                assertSame(best, store.course(credits.bestRow(codeId)), scale.id() + ": " + store.code(codeId));
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Chỉ mục được vá sau khi sửa điểm / tín chỉ phải cho cùng kết quả tra cứu với chỉ mục dựng mới.
+ */
+class SubjectIndexTest {
+    @Test
+    void patchMatchesFreshBuild() {
+        Random random = new Random(29);
+        CourseService.setData(TestCourses.random(random, 2000, 40, 6, 3));
+        List<Set<String>> semesterFilters = List.of(Set.of(), Set.of("20201"), Set.of("20202", "20204", "20205"));
+        List<Set<Integer>> creditFilters = List.of(Set.of(), Set.of(3), Set.of(1, 4));
+        List<Set<String>> gradeFilters = List.of(Set.of(), Set.of("A", "B+"), Set.of("F", SubjectIndex.GRADE_OTHER));
+
+        for (int round = 0; round < 100; round++) {
+            SubjectIndex index = SubjectIndex.current();
+            List<Course> fresh = TestCourses.copyAll(CourseService.getAllCourses());
+            for (int k = 1 + random.nextInt(3); k > 0; k--) {
+                Course c = fresh.get(random.nextInt(fresh.size()));
+                if (random.nextBoolean()) c.setGrade(TestCourses.grade(random));
+                else c.setCredits(1 + random.nextInt(4));
+            }
+            assertTrue(CourseService.applyExternalChange(fresh, CourseService.getVersion()));
+            assertSame(index, SubjectIndex.current(), "chỉ sửa điểm / tín chỉ thì chỉ mục được vá, không dựng lại");
+
+            List<List<Course>> patched = searchAll(semesterFilters, creditFilters, gradeFilters);
+            // Cùng các đối tượng Course nhưng version mới: chỉ mục được dựng lại từ đầu
+            CourseService.setData(new ArrayList<>(CourseService.getAllCourses()));
+            assertNotSame(index, SubjectIndex.current());
+            assertEquals(searchAll(semesterFilters, creditFilters, gradeFilters), patched, "vòng " + round);
+        }
+    }
+
+    @Test
+    void eachStudentGetsTheirOwnBestAttempt() {
+        Course a1 = new Course("IT1", "Môn 1", 3, "D", "20201", "SV1");
+        Course b1 = new Course("IT1", "Môn 1", 3, "A", "20201", "SV2");
+        Course a2 = new Course("IT1", "Môn 1", 3, "B", "20202", "SV1");
+        Course b2 = new Course("IT2", "Môn 2", 2, "C", "20202", "SV2");
+        CourseService.setData(List.of(a1, b1, a2, b2));
+
+        SubjectIndex index = SubjectIndex.current();
+        assertEquals(List.of(a2, b1, b2), index.search(Set.of(), Set.of(), Set.of()));
+        assertEquals(List.of(a1, b1), index.search(Set.of(), Set.of(), Set.of("20201")));
+        assertEquals(List.of(b1), index.search(Set.of(), Set.of("A"), Set.of()));
+    }
+
+    private static List<List<Course>> searchAll(List<Set<String>> semesters, List<Set<Integer>> credits,
+                                                List<Set<String>> grades) {
+        SubjectIndex index = SubjectIndex.current();
+        List<List<Course>> results = new ArrayList<>();
+        for (Set<String> s : semesters) {
+            for (Set<Integer> c : credits) {
+                for (Set<String> g : grades) results.add(index.search(c, g, s));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,54 @@
+package calcpa.service;
+
+import calcpa.model.Course;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Dữ liệu môn học ngẫu nhiên dùng chung cho các test so sánh đường cập nhật từng phần với
+ * tính lại từ đầu. Ít mã môn, ít kỳ để có nhiều lần học lại, kể cả trong cùng kỳ.
+ */
+final class TestCourses {
+    // Gồm cả điểm không tính vào GPA (P), điểm lạ (NA) và chưa có điểm
+    static final String[] GRADES = {"A+", "A", "B+", "B", "C+", "C", "D+", "D", "F", "P", "NA", ""};
+
+    private TestCourses() {
+    }
+
+    static String grade(Random random) {
+        return GRADES[random.nextInt(GRADES.length)];
+    }
+
+    // Một trong các kỳ 20201 .. 2020<semesters>
+    static String semester(Random random, int semesters) {
+        return "2020" + (1 + random.nextInt(semesters));
+    }
+
+    /**
+     * count môn với mã IT0 .. IT<codes - 1>, kỳ theo semester(random, semesters) và sinh viên
+     * SV0 .. SV<students - 1>; students = 0 cho dữ liệu một sinh viên không có mã.
+     */
+    static List<Course> random(Random random, int count, int codes, int semesters, int students) {
+        List<Course> courses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) courses.add(random(random, codes, semesters, students));
+        return courses;
+    }
+
+    static Course random(Random random, int codes, int semesters, int students) {
+        int code = random.nextInt(codes);
+        return new Course("IT" + code, "Môn " + code, 1 + random.nextInt(4), grade(random),
+                semester(random, semesters), students == 0 ? "" : "SV" + random.nextInt(students));
+    }
+
+    static Course copy(Course c) {
+        return new Course(c.getCode(), c.getName(), c.getCredits(), c.getGrade(), c.getSemester(), c.getStudentId());
+    }
+
+    static List<Course> copyAll(List<Course> courses) {
+        List<Course> copies = new ArrayList<>(courses.size());
+        for (Course c : courses) copies.add(copy(c));
+        return copies;
+    }
+}